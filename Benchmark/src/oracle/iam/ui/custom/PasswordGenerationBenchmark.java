@@ -0,0 +1,137 @@
+package oracle.iam.ui.custom;
+
+import java.util.concurrent.TimeUnit;
+import oracle.iam.passwordmgmt.vo.PasswordPolicyInfo;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Password Generation Benchmark
+ * - Generation, custom rule checks and the whole generatePassword path against InMemoryOIMServices
+ * - Matrix of the synthetic policies (lenient, strict, tiny allowed alphabet, long max length) and user data
+ * - Reports ops/s; candidates and remote validations per generated password as aux counters
+ *
+ * Run with the gc profiler to see the allocation rate:
+ *   java org.openjdk.jmh.Main PasswordGenerationBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PasswordGenerationBenchmark
+{
+    @Param({"lenient", "strict", "tinyAlphabet", "longMax"})
+    public String policy;
+
+    @Param({"plain", "metacharacters"})
+    public String userData;
+
+    private PasswordGenerator generator;
+    private CustomPasswordRules rules;
+    private PasswordResetService resetService;
+    private InMemoryOIMServices services;
+    private char[] buffer;
+    private String userLogin;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        PasswordPolicyInfo policyInfo = SyntheticPasswordPolicies.get(policy);
+        services = new InMemoryOIMServices(policyInfo);
+
+        if ("metacharacters".equals(userData))
+        {
+            userLogin = "J.DOE+1";
+            services.addUser(userLogin, "Jo(h)n", "D*e", "j.doe+it@ex.com", "1");
+            rules = new CustomPasswordRules("j.doe+it@ex.com", "Jo(h)n D*e");
+        }
+
+        else
+        {
+            userLogin = "JDOE";
+            services.addUser(userLogin, "John", "Doe", "john.doe@example.com", "1");
+            rules = new CustomPasswordRules("john.doe@example.com", "John Doe");
+        }
+
+        generator = new PasswordGenerator(new CompiledPasswordPolicy(policyInfo));
+        buffer = generator.newBuffer();
+        resetService = new PasswordResetService(services.getUserManager(), services.getPasswordMgmtService(), new PasswordPolicyCache(64, Long.MAX_VALUE));
+    }
+
+    /**
+     * Candidates generated and remote validations made per accepted password
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters
+    {
+        public long candidates;
+        public long remoteValidations;
+        public long successes;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            candidates = 0;
+            remoteValidations = 0;
+            successes = 0;
+        }
+    }
+
+    @Benchmark
+    public char[] generate()
+    {
+        generator.generate(buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public boolean customRules()
+    {
+        return rules.accepts(buffer, buffer.length);
+    }
+
+    /**
+     * Generate until the custom rules accept a candidate, as the reset loop does before the remote call
+     */
+    @Benchmark
+    public char[] generateUntilAccepted(Counters counters)
+    {
+        do
+        {
+            generator.generate(buffer);
+            counters.candidates++;
+        } while (!rules.accepts(buffer, buffer.length));
+
+        counters.successes++;
+        return buffer;
+    }
+
+    /**
+     * Whole generation path: lookup, cached policy, generation, custom rules and confirming validation
+     */
+    @Benchmark
+    public char[] generatePassword(Counters counters) throws Exception
+    {
+        int[] counts = new int[2];
+        char[] pwd = resetService.generatePassword(userLogin, counts);
+        counters.candidates += counts[0];
+        counters.remoteValidations += counts[1];
+        counters.successes++;
+        SecureRandomSource.wipe(pwd);
+        return pwd;
+    }
+}
@@ -0,0 +1,435 @@
+package oracle.iam.ui.custom;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import oracle.core.ojdl.logging.ODLLevel;
+import oracle.core.ojdl.logging.ODLLogger;
+import oracle.iam.identity.usermgmt.api.UserManager;
+import oracle.iam.identity.usermgmt.api.UserManagerConstants;
+import oracle.iam.identity.usermgmt.vo.User;
+import oracle.iam.passwordmgmt.api.PasswordMgmtService;
+import oracle.iam.platform.OIMClient;
+import oracle.iam.platform.entitymgr.vo.SearchCriteria;
+
+/**
+ * Bulk Password Rotation
+ * - Forces a password change for many users with the same generation logic as CustomPasswordReset
+ * - User logins are streamed from a file or an OIM user search
+ * - Lookup, generation and changePassword run on a bounded worker pool; reading blocks while the pool is saturated
+ * - One result line per user is appended to the results file as soon as it completes;
+ *   a rerun with the same results file skips users that already succeeded
+ * - Generated passwords are never written; users receive the OIM password notification by default
+ *
+ * Results file format (tab separated): login, OK|FAILED, milliseconds, error
+ *
+ * Usage:
+ *   java -Djava.security.auth.login.config=authwl.conf oracle.iam.ui.custom.BulkPasswordRotation
+ *        --url t3://oimhost:14000 --user xelsysadm --results results.tsv
+ *        (--input logins.txt | --query "Organization Name=Xellerate Users")
+ *        [--threads 8] [--queue 64] [--notify true] [--report 10]
+ *   The password of --user is read from the OIM_PASSWORD environment variable.
+ */
+public class BulkPasswordRotation
+{
+    // Logger
+    private static final ODLLogger logger = ODLLogger.getODLLogger(BulkPasswordRotation.class.getName());
+
+    static final String STATUS_OK = "OK";
+    static final String STATUS_FAILED = "FAILED";
+
+    private final PasswordResetService resetService;
+    private final int threads;
+    private final int queueCapacity;
+    private final boolean sendNotification;
+    private final long reportIntervalSeconds;
+
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    /**
+     * @param userManager           OIM user service
+     * @param pwdMgmtService        OIM password service
+     * @param threads               Number of worker threads
+     * @param queueCapacity         Number of users that may wait for a worker
+     * @param sendNotification      Send the OIM password change notification to each user
+     * @param reportIntervalSeconds Interval between throughput reports
+     */
+    public BulkPasswordRotation(UserManager userManager, PasswordMgmtService pwdMgmtService, int threads, int queueCapacity, boolean sendNotification, long reportIntervalSeconds)
+    {
+        this.resetService = new PasswordResetService(userManager, pwdMgmtService, PasswordPolicyCache.getInstance(), UserSnapshotCache.getInstance(),
+                                                     ResetPipeline.forWorkers(threads));
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.sendNotification = sendNotification;
+        this.reportIntervalSeconds = reportIntervalSeconds;
+    }
+
+    /**
+     * Rotates the password of every user from the source
+     * @param source        User logins to process
+     * @param results       Results file; appended to, and read first to skip users that already succeeded
+     * @return Number of users that failed
+     */
+    public long run(LoginSource source, File results) throws Exception
+    {
+        Set<String> completed = readCompleted(results);
+        logger.log(ODLLevel.NOTIFICATION, "Resuming with {0} users already rotated", new Object[]{completed.size()});
+
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(results, true), "UTF-8"));
+        final Semaphore capacity = new Semaphore(threads + queueCapacity);
+        ExecutorService workers = Executors.newFixedThreadPool(threads, new NamedThreadFactory("BulkPasswordRotation-worker"));
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("BulkPasswordRotation-report"));
+        final long start = System.currentTimeMillis();
+
+        reporter.scheduleAtFixedRate(new Runnable()
+        {
+            public void run()
+            {
+                report(start);
+            }
+        }, reportIntervalSeconds, reportIntervalSeconds, TimeUnit.SECONDS);
+
+        try
+        {
+            String login;
+            while ((login = source.next()) != null)
+            {
+                if (completed.contains(login))
+                {
+                    skipped.incrementAndGet();
+                    continue;
+                }
+
+                // Backpressure: wait until a worker or a queue slot is free
+                capacity.acquire();
+                final String userLogin = login;
+                workers.execute(new Runnable()
+                {
+                    public void run()
+                    {
+                        try
+                        {
+                            rotate(userLogin, writer);
+                        }
+
+                        finally
+                        {
+                            capacity.release();
+                        }
+                    }
+                });
+            }
+
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+
+        finally
+        {
+            workers.shutdownNow();
+            reporter.shutdownNow();
+            source.close();
+            writer.close();
+        }
+
+        report(start);
+        return failed.get();
+    }
+
+    public long getSucceeded()
+    {
+        return succeeded.get();
+    }
+
+    public long getFailed()
+    {
+        return failed.get();
+    }
+
+    public long getSkipped()
+    {
+        return skipped.get();
+    }
+
+    /**
+     * Rotates the password of one user and records the result
+     */
+    private void rotate(String userLogin, Writer writer)
+    {
+        long start = System.currentTimeMillis();
+        String status = STATUS_OK;
+        String error = "";
+
+        try
+        {
+            SecureRandomSource.wipe(resetService.resetPassword(userLogin, sendNotification));
+            succeeded.incrementAndGet();
+        }
+
+        catch (Exception e)
+        {
+            status = STATUS_FAILED;
+            error = String.valueOf(e.getMessage()).replace('\t', ' ').replace('\n', ' ');
+            failed.incrementAndGet();
+            logger.log(ODLLevel.WARNING, "Failed to rotate password for user " + userLogin, e);
+        }
+
+        String line = userLogin + "\t" + status + "\t" + (System.currentTimeMillis() - start) + "\t" + error + "\n";
+        synchronized (writer)
+        {
+            try
+            {
+                writer.write(line);
+                writer.flush(); // Checkpoint
+            }
+
+            catch (IOException e)
+            {
+                logger.log(ODLLevel.SEVERE, "Failed to write result for user " + userLogin, e);
+            }
+        }
+    }
+
+    private void report(long start)
+    {
+        long processed = succeeded.get() + failed.get();
+        double seconds = Math.max(System.currentTimeMillis() - start, 1L) / 1000.0;
+        logger.log(ODLLevel.NOTIFICATION, "Processed: {0} Succeeded: {1} Failed: {2} Skipped: {3} Throughput: {4} users/s",
+                   new Object[]{processed, succeeded.get(), failed.get(), skipped.get(), String.format("%.1f", processed / seconds)});
+    }
+
+    /**
+     * Logins recorded as OK in an existing results file
+     */
+    static Set<String> readCompleted(File results) throws IOException
+    {
+        Set<String> completed = new HashSet<String>();
+        if (!results.exists())
+        {
+            return completed;
+        }
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(results), "UTF-8"));
+        try
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                String[] fields = line.split("\t");
+                if (fields.length >= 2 && STATUS_OK.equals(fields[1]))
+                {
+                    completed.add(fields[0]);
+                }
+            }
+        }
+
+        finally
+        {
+            reader.close();
+        }
+        return completed;
+    }
+
+    /**
+     * Stream of user logins
+     */
+    public interface LoginSource
+    {
+        /**
+         * @return Next user login; null when exhausted
+         */
+        String next() throws Exception;
+
+        void close() throws IOException;
+    }
+
+    /**
+     * One user login per line; blank lines and lines starting with # are ignored
+     */
+    public static class FileLoginSource implements LoginSource
+    {
+        private final BufferedReader reader;
+
+        public FileLoginSource(File file) throws IOException
+        {
+            this.reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        }
+
+        public String next() throws IOException
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                line = line.trim();
+                if (line.length() > 0 && !line.startsWith("#"))
+                {
+                    return line;
+                }
+            }
+            return null;
+        }
+
+        public void close() throws IOException
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * User logins of an OIM user search, fetched one page at a time
+     */
+    public static class QueryLoginSource implements LoginSource
+    {
+        private final UserManager userManager;
+        private final SearchCriteria criteria;
+        private final int pageSize;
+        private final Set<String> retAttrs = new HashSet<String>();
+        private Iterator<User> page;
+        private int nextRow;
+        private boolean exhausted;
+
+        /**
+         * @param userManager   OIM user service
+         * @param attribute     User attribute to search on
+         * @param value         Value to match
+         * @param pageSize      Number of users fetched per search call
+         */
+        public QueryLoginSource(UserManager userManager, String attribute, Object value, int pageSize)
+        {
+            this.userManager = userManager;
+            this.criteria = new SearchCriteria(attribute, value, SearchCriteria.Operator.EQUAL);
+            this.pageSize = pageSize;
+            this.retAttrs.add(UserManagerConstants.AttributeName.USER_LOGIN.getId());
+        }
+
+        public String next() throws Exception
+        {
+            while (page == null || !page.hasNext())
+            {
+                if (exhausted)
+                {
+                    return null;
+                }
+
+                // Rows are only stable between pages in a fixed order; User Login is unique
+                HashMap<String, Object> configParams = new HashMap<String, Object>();
+                configParams.put("STARTROW", nextRow);
+                configParams.put("ENDROW", nextRow + pageSize - 1);
+                configParams.put("SORTEDBY", UserManagerConstants.AttributeName.USER_LOGIN.getId());
+                List<User> users = userManager.search(criteria, retAttrs, configParams);
+                nextRow += pageSize;
+                exhausted = users.size() < pageSize;
+                page = users.iterator();
+            }
+
+            return (String)page.next().getAttribute(UserManagerConstants.AttributeName.USER_LOGIN.getId());
+        }
+
+        public void close()
+        {
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory
+    {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String prefix)
+        {
+            this.prefix = prefix;
+        }
+
+        public Thread newThread(Runnable r)
+        {
+            Thread t = new Thread(r, prefix + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        HashMap<String, String> options = new HashMap<String, String>();
+        for (int i = 0; i + 1 < args.length; i += 2)
+        {
+            options.put(args[i], args[i + 1]);
+        }
+
+        if (options.get("--url") == null || options.get("--user") == null || options.get("--results") == null
+            || (options.get("--input") == null && options.get("--query") == null))
+        {
+            System.err.println("Usage: BulkPasswordRotation --url <t3 url> --user <admin> --results <file> (--input <file> | --query <attribute=value>) [--threads n] [--queue n] [--notify true|false] [--report seconds]");
+            System.exit(2);
+        }
+
+        Hashtable<String, String> env = new Hashtable<String, String>();
+        env.put(OIMClient.JAVA_NAMING_FACTORY_INITIAL, "weblogic.jndi.WLInitialContextFactory");
+        env.put(OIMClient.JAVA_NAMING_PROVIDER_URL, options.get("--url"));
+        OIMClient client = new OIMClient(env);
+        String password = System.getenv("OIM_PASSWORD");
+        client.login(options.get("--user"), (password == null) ? new char[0] : password.toCharArray());
+        long failures;
+
+        try
+        {
+            UserManager userManager = client.getService(UserManager.class);
+            PasswordMgmtService pwdMgmtService = client.getService(PasswordMgmtService.class);
+
+            LoginSource source;
+            if (options.get("--input") != null)
+            {
+                source = new FileLoginSource(new File(options.get("--input")));
+            }
+
+            else
+            {
+                String[] query = options.get("--query").split("=", 2);
+                source = new QueryLoginSource(userManager, query[0], query[1], 500);
+            }
+
+            BulkPasswordRotation rotation = new BulkPasswordRotation(userManager, pwdMgmtService,
+                                                                     Integer.parseInt(value(options, "--threads", "8")),
+                                                                     Integer.parseInt(value(options, "--queue", "64")),
+                                                                     Boolean.parseBoolean(value(options, "--notify", "true")),
+                                                                     Long.parseLong(value(options, "--report", "10")));
+            rotation.resetService.setActor(options.get("--user"));
+            failures = rotation.run(source, new File(options.get("--results")));
+        }
+
+        finally
+        {
+            client.logout();
+            ResetAuditLog.getInstance().shutdown(); // Write pending audit events before the JVM exits
+        }
+
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static String value(HashMap<String, String> options, String name, String defaultValue)
+    {
+        return (options.get(name) == null) ? defaultValue : options.get(name);
+    }
+}
@@ -0,0 +1,182 @@
+package oracle.iam.ui.custom;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Custom Password Rules Check
+ * - Compares CustomPasswordRules with the original custom rule regex, with the user data quoted so it is matched literally
+ * - Fixed cases: emails and display names containing . + * ( ) [ ? \ $, one and two character display names,
+ *   and near misses where an unquoted metacharacter would have matched a different character
+ * - Random cases: users made of letters and metacharacters, passwords with a user attribute planted in random case,
+ *   the same with one character changed, and random strings
+ * - Prints the first mismatches and exits with 1 if any
+ *
+ * Usage:
+ *   java oracle.iam.ui.custom.CustomPasswordRulesCheck [--users 2000] [--passwords 200] [--seed n]
+ */
+public class CustomPasswordRulesCheck
+{
+    private static final String CHARACTERS = "abcdeXYZ019.+*()[]?\\$@-_\u00e9\u00c4";
+    private static final int MAX_REPORTED = 20;
+
+    // Email, display name, password, expected to be accepted
+    private static final Object[][] FIXED = {
+        {"j.doe+it@ex.com", "John Doe", "xJ.DOE+IT@EX.COM1", Boolean.FALSE},
+        {"j.doe+it@ex.com", "John Doe", "jXdoe+it@exYcom1", Boolean.TRUE},     // '.' is not a wildcard
+        {"j.doe+it@ex.com", "John Doe", "j.doeeeit@ex.com1", Boolean.TRUE},    // '+' is not a quantifier
+        {"a*b@ex.com", "Jo(h)n D[e]?", "aaab@ex.com1", Boolean.TRUE},          // '*' is not a quantifier
+        {"a*b@ex.com", "Jo(h)n D[e]?", "xA*B@EX.COM1", Boolean.FALSE},
+        {"a*b@ex.com", "Jo(h)n D[e]?", "1jo(h)nd[e]?x", Boolean.FALSE},        // Spaces removed from the display name
+        {"a*b@ex.com", "Jo(h)n D[e]?", "1johnde", Boolean.TRUE},               // Parentheses and brackets are not groups
+        {"a*b@ex.com", "Jo(h)n D[e]?", "1jo(h)nd", Boolean.TRUE},
+        {"c\\d$@ex.com", "Q?", "1C\\D$@EX.COM", Boolean.FALSE},
+        {"c\\d$@ex.com", "Q?", "1c7@ex.com", Boolean.TRUE},                    // '\d' is not a digit class, '$' is not an anchor
+        {"c\\d$@ex.com", "Q?", "xq?1", Boolean.FALSE},
+        {"c\\d$@ex.com", "Q?", "xq1", Boolean.TRUE},                           // '?' does not make 'q' optional
+        {"al@ex.com", "Al", "1xAL", Boolean.FALSE},                            // Two character display name
+        {"al@ex.com", "Q", "1xqz", Boolean.FALSE},                             // One character display name
+        {"al@ex.com", "Q", "1xyz", Boolean.TRUE},
+        {"al@ex.com", "Al", "xyzAB", Boolean.FALSE},                           // No number or symbol
+        {null, null, "abc$", Boolean.TRUE},
+        {"", " ", "abc1", Boolean.TRUE}                                          // Empty values forbid nothing
+    };
+
+    private final Random random;
+    private long passwords;
+    private long accepted;
+    private long mismatches;
+
+    public CustomPasswordRulesCheck(long seed)
+    {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @param users                 Random users to generate
+     * @param passwordsPerUser      Passwords to check per user
+     * @return Number of passwords CustomPasswordRules and the reference disagree on
+     */
+    public long run(int users, int passwordsPerUser)
+    {
+        for (Object[] c : FIXED)
+        {
+            String email = (String)c[0];
+            String displayName = (String)c[1];
+            char[] pwd = ((String)c[2]).toCharArray();
+            boolean expected = ((Boolean)c[3]).booleanValue();
+
+            CustomPasswordRules rules = new CustomPasswordRules(email, displayName);
+            check(email, displayName, pwd, rules);
+            if (rules.accepts(pwd, pwd.length) != expected && ++mismatches <= MAX_REPORTED)
+            {
+                System.out.println("FIXED password=" + new String(pwd) + " expected=" + expected + " email=" + email + " displayName=" + displayName);
+            }
+        }
+
+        for (int u = 0; u < users; u++)
+        {
+            String email = randomString(1 + random.nextInt(8)) + "@" + randomString(1 + random.nextInt(4));
+            String displayName = randomString(1 + random.nextInt(4)) + " " + randomString(random.nextInt(5));
+            CustomPasswordRules rules = new CustomPasswordRules(email, displayName);
+
+            for (int i = 0; i < passwordsPerUser; i++)
+            {
+                check(email, displayName, randomPassword(random.nextBoolean() ? email : displayName.replaceAll("\\s+", "")), rules);
+            }
+        }
+
+        System.out.println(String.format("Fixed cases: %d, users: %d, passwords: %d, accepted: %d, mismatches: %d",
+                                         FIXED.length, users, passwords, accepted, mismatches));
+        return mismatches;
+    }
+
+    private void check(String email, String displayName, char[] pwd, CustomPasswordRules rules)
+    {
+        boolean expected = reference(email, displayName, new String(pwd));
+        boolean actual = rules.accepts(pwd, pwd.length);
+
+        passwords++;
+        accepted += actual ? 1 : 0;
+        if (expected != actual && ++mismatches <= MAX_REPORTED)
+        {
+            System.out.println("MISMATCH password=" + new String(pwd) + " expected=" + expected + " actual=" + actual
+                               + " email=" + email + " displayName=" + displayName);
+        }
+    }
+
+    /**
+     * The original rule: a number or symbol, and neither the email nor the display name (spaces removed) [IGNORE CASE];
+     * the user data is quoted so it is matched literally
+     */
+    private static boolean reference(String email, String displayName, String pwd)
+    {
+        boolean numberOrSymbol = false;
+        for (int i = 0; i < pwd.length(); i++)
+        {
+            numberOrSymbol |= !Character.isLetter(pwd.charAt(i));
+        }
+        return numberOrSymbol && !contains(pwd, email) && !contains(pwd, (displayName == null) ? null : displayName.replaceAll("\\s+", ""));
+    }
+
+    private static boolean contains(String pwd, String value)
+    {
+        if (value == null || value.length() == 0)
+        {
+            return false;
+        }
+        return Pattern.compile(Pattern.quote(value), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE).matcher(pwd).find();
+    }
+
+    /**
+     * A user attribute planted in random case, the same with one character changed, or a random string
+     */
+    private char[] randomPassword(String value)
+    {
+        int kind = random.nextInt(3);
+        StringBuilder sb = new StringBuilder(randomString(random.nextInt(4)));
+        if (kind < 2)
+        {
+            int start = sb.length();
+            for (int i = 0; i < value.length(); i++)
+            {
+                char c = value.charAt(i);
+                sb.append(random.nextBoolean() ? Character.toUpperCase(c) : Character.toLowerCase(c));
+            }
+
+            if (kind == 1)
+            {
+                sb.setCharAt(start + random.nextInt(value.length()), CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+            }
+        }
+        return sb.append(randomString(random.nextInt(4))).toString().toCharArray();
+    }
+
+    private String randomString(int length)
+    {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+        {
+            sb.append(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+        }
+        return sb.toString();
+    }
+
+    public static void main(String[] args)
+    {
+        HashMap<String, String> options = new HashMap<String, String>();
+        for (int i = 0; i + 1 < args.length; i += 2)
+        {
+            options.put(args[i], args[i + 1]);
+        }
+
+        long seed = (options.get("--seed") == null) ? System.currentTimeMillis() : Long.parseLong(options.get("--seed"));
+        int users = Integer.parseInt((options.get("--users") == null) ? "2000" : options.get("--users"));
+        int passwords = Integer.parseInt((options.get("--passwords") == null) ? "200" : options.get("--passwords"));
+
+        System.out.println("Seed: " + seed);
+        long mismatches = new CustomPasswordRulesCheck(seed).run(users, passwords);
+        System.exit(mismatches == 0 ? 0 : 1);
+    }
+}
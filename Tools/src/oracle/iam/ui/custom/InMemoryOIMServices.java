@@ -0,0 +1,342 @@
+package oracle.iam.ui.custom;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import oracle.iam.identity.exception.NoSuchUserException;
+import oracle.iam.identity.usermgmt.api.UserManager;
+import oracle.iam.identity.usermgmt.api.UserManagerConstants;
+import oracle.iam.identity.usermgmt.vo.User;
+import oracle.iam.passwordmgmt.api.PasswordMgmtService;
+import oracle.iam.passwordmgmt.vo.PasswordPolicyInfo;
+import oracle.iam.passwordmgmt.vo.ValidationResult;
+
+/**
+ * In-Memory OIM Services
+ * - Local stand-ins for UserManager and PasswordMgmtService used by the headless tools
+ * - Implemented as dynamic proxies; only the operations used by the reset path are supported
+ * - Counts every back-end call by operation name
+ */
+public class InMemoryOIMServices
+{
+    private final Map<String, HashMap<String, Object>> users = new ConcurrentHashMap<String, HashMap<String, Object>>();
+    private final Map<String, String> loginsByKey = new ConcurrentHashMap<String, String>();
+    private final Map<String, char[]> passwords = new ConcurrentHashMap<String, char[]>();
+    private final ConcurrentHashMap<String, AtomicLong> calls = new ConcurrentHashMap<String, AtomicLong>();
+    private final AtomicLong nextUserKey = new AtomicLong(1);
+    private volatile PasswordPolicyInfo policy;
+
+    private final UserManager userManager;
+    private final PasswordMgmtService pwdMgmtService;
+
+    /**
+     * @param policy    Password policy applicable to every user
+     */
+    public InMemoryOIMServices(PasswordPolicyInfo policy)
+    {
+        this.policy = policy;
+        this.userManager = proxy(UserManager.class);
+        this.pwdMgmtService = proxy(PasswordMgmtService.class);
+    }
+
+    /**
+     * Adds a user
+     * @param login         User Login
+     * @param firstName     First Name
+     * @param lastName      Last Name
+     * @param email         Email
+     * @param orgKey        Organization Key
+     */
+    public void addUser(String login, String firstName, String lastName, String email, String orgKey)
+    {
+        HashMap<String, Object> attrs = new HashMap<String, Object>();
+        String userKey = String.valueOf(nextUserKey.getAndIncrement());
+        attrs.put(UserManagerConstants.AttributeName.USER_KEY.getId(), userKey);
+        attrs.put(UserManagerConstants.AttributeName.USER_LOGIN.getId(), login);
+        attrs.put(UserManagerConstants.AttributeName.FIRSTNAME.getId(), firstName);
+        attrs.put(UserManagerConstants.AttributeName.LASTNAME.getId(), lastName);
+        attrs.put(UserManagerConstants.AttributeName.DISPLAYNAME.getId(), firstName + " " + lastName);
+        attrs.put(UserManagerConstants.AttributeName.EMAIL.getId(), email);
+        attrs.put(UserManagerConstants.AttributeName.USER_ORGANIZATION.getId(), orgKey);
+        users.put(login, attrs);
+        loginsByKey.put(userKey, login);
+    }
+
+    public UserManager getUserManager()
+    {
+        return userManager;
+    }
+
+    public PasswordMgmtService getPasswordMgmtService()
+    {
+        return pwdMgmtService;
+    }
+
+    public void setPolicy(PasswordPolicyInfo policy)
+    {
+        this.policy = policy;
+    }
+
+    /**
+     * @param login     User Login
+     * @return true if the password of the user has been changed
+     */
+    public boolean isPasswordChanged(String login)
+    {
+        return passwords.containsKey(login);
+    }
+
+    /**
+     * @param operation     Method name, e.g. getDetails
+     * @return Number of calls made to the operation
+     */
+    public long getCallCount(String operation)
+    {
+        AtomicLong count = calls.get(operation);
+        return (count == null) ? 0 : count.get();
+    }
+
+    /**
+     * @return Number of calls made to all operations
+     */
+    public long getTotalCallCount()
+    {
+        long total = 0;
+        for (AtomicLong count : calls.values())
+        {
+            total += count.get();
+        }
+        return total;
+    }
+
+    /**
+     * @return Call counts by operation name
+     */
+    public Map<String, Long> getCallCounts()
+    {
+        Map<String, Long> counts = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : calls.entrySet())
+        {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    /**
+     * Dispatches a back-end operation; hook for subclasses that inject latency or failures
+     * @param operation     Method name
+     * @param args          Method arguments
+     * @return Method result
+     */
+    protected Object invoke(String operation, Object[] args) throws Exception
+    {
+        if ("getDetails".equals(operation))
+        {
+            return getDetails((String)args[0]);
+        }
+
+        else if ("validatePasswordAgainstPolicy".equals(operation))
+        {
+            return validate((char[])args[0], (String)args[1]);
+        }
+
+        else if ("changePassword".equals(operation))
+        {
+            changePassword((String)args[0], (char[])args[1]);
+            return null;
+        }
+
+        else if ("resetPassword".equals(operation))
+        {
+            getDetails((String)args[0]);
+            passwords.put((String)args[0], new char[0]);
+            return null;
+        }
+
+        else if ("search".equals(operation))
+        {
+            return search((Map<?, ?>)args[2]);
+        }
+
+        throw new UnsupportedOperationException(operation);
+    }
+
+    private User getDetails(String login) throws NoSuchUserException
+    {
+        HashMap<String, Object> attrs = users.get(login);
+        if (attrs == null)
+        {
+            throw new NoSuchUserException(login, UserManagerConstants.AttributeName.USER_LOGIN.getId());
+        }
+
+        return new User((String)attrs.get(UserManagerConstants.AttributeName.USER_KEY.getId()), new HashMap<String, Object>(attrs));
+    }
+
+    private ValidationResult validate(char[] pwd, String userKey)
+    {
+        String login = (userKey == null) ? null : loginsByKey.get(userKey);
+        ValidationResult vr = new ValidationResult();
+        vr.setPasswordPolicyInfo(policy);
+        vr.setPasswordValid(violations(policy, (login == null) ? null : users.get(login), pwd).isEmpty());
+        return vr;
+    }
+
+    private void changePassword(String login, char[] pwd) throws Exception
+    {
+        getDetails(login);
+        if (!violations(policy, users.get(login), pwd).isEmpty())
+        {
+            throw new IllegalArgumentException("Password does not conform to password policy");
+        }
+        passwords.put(login, pwd.clone());
+    }
+
+    /**
+     * Pages through users with the STARTROW/ENDROW configuration parameters; criteria are ignored
+     * - Users are always returned sorted by User Login, whatever SORTEDBY asks for
+     */
+    private List<User> search(Map<?, ?> configParams) throws NoSuchUserException
+    {
+        List<String> logins = new ArrayList<String>(new TreeMap<String, Object>(users).keySet());
+        int start = (configParams != null && configParams.get("STARTROW") != null) ? ((Number)configParams.get("STARTROW")).intValue() : 0;
+        int end = (configParams != null && configParams.get("ENDROW") != null) ? ((Number)configParams.get("ENDROW")).intValue() : logins.size() - 1;
+
+        List<User> page = new ArrayList<User>();
+        for (int i = start; i <= end && i < logins.size(); i++)
+        {
+            page.add(getDetails(logins.get(i)));
+        }
+        return page;
+    }
+
+    /**
+     * Verdict of the stand-in; a plain reading of every password policy rule, kept independent of
+     * LocalPasswordPolicyEvaluator so the two can be compared
+     * @param policy    Password policy; null accepts every password
+     * @param attrs     Attributes of the target user; null skips the user attribute exclusions
+     * @param pwd       Password
+     * @return Names of the LocalPasswordPolicyEvaluator.Rule values the password violates; empty if valid
+     */
+    static Set<String> violations(PasswordPolicyInfo policy, Map<String, Object> attrs, char[] pwd)
+    {
+        Set<String> violations = new TreeSet<String>();
+        if (policy == null)
+        {
+            return violations;
+        }
+
+        int upper = 0, lower = 0, alphabets = 0, digits = 0, special = 0, unicode = 0;
+        Map<Character, Integer> occurrences = new HashMap<Character, Integer>();
+        for (char c : pwd)
+        {
+            if ((policy.getAllowedChars() != null && !policy.getAllowedChars().isEmpty() && !policy.getAllowedChars().contains(c))
+                || (policy.getDisAllowedChars() != null && policy.getDisAllowedChars().contains(c)))
+            {
+                violations.add("CHARACTERS");
+            }
+
+            upper += Character.isUpperCase(c) ? 1 : 0;
+            lower += Character.isLowerCase(c) ? 1 : 0;
+            alphabets += Character.isLetter(c) ? 1 : 0;
+            digits += Character.isDigit(c) ? 1 : 0;
+            special += Character.isLetterOrDigit(c) ? 0 : 1;
+            unicode += (c > 127) ? 1 : 0;
+            occurrences.put(c, occurrences.containsKey(c) ? occurrences.get(c) + 1 : 1);
+        }
+
+        int maxOccurrences = 0;
+        for (int count : occurrences.values())
+        {
+            maxOccurrences = Math.max(maxOccurrences, count);
+        }
+
+        check(violations, "MIN_LENGTH", pwd.length < valueOf(policy.getMinLength(), 0));
+        check(violations, "MAX_LENGTH", pwd.length > valueOf(policy.getMaxLength(), Integer.MAX_VALUE));
+        check(violations, "MIN_UPPERCASE", upper < valueOf(policy.getMinUppercase(), 0));
+        check(violations, "MIN_LOWERCASE", lower < valueOf(policy.getMinLowercase(), 0));
+        check(violations, "MIN_ALPHABETS", alphabets < valueOf(policy.getMinAlphabets(), 0));
+        check(violations, "MIN_NUMERICS", digits < valueOf(policy.getMinNumerics(), 0));
+        check(violations, "MIN_ALPHANUMERICS", alphabets + digits < valueOf(policy.getMinAlphaNumerics(), 0));
+        check(violations, "MIN_SPECIAL", special < valueOf(policy.getMinSpecialChars(), 0));
+        check(violations, "MAX_SPECIAL", special > valueOf(policy.getMaxSpecialChars(), Integer.MAX_VALUE));
+        check(violations, "MIN_UNICODE", unicode < valueOf(policy.getMinUnicode(), 0));
+        check(violations, "MAX_UNICODE", unicode > valueOf(policy.getMaxUnicode(), Integer.MAX_VALUE));
+        check(violations, "MAX_REPEATED", maxOccurrences > valueOf(policy.getMaxRepeated(), Integer.MAX_VALUE));
+        check(violations, "MIN_UNIQUE", occurrences.size() < valueOf(policy.getMinUnique(), 0));
+        check(violations, "STARTS_WITH_CHAR", Boolean.TRUE.equals(policy.getStartsWithChar()) && (pwd.length == 0 || !Character.isLetter(pwd[0])));
+
+        if (attrs != null)
+        {
+            String password = new String(pwd).toLowerCase(Locale.ENGLISH);
+            check(violations, "USER_ID", Boolean.TRUE.equals(policy.getDisAllowUserId())
+                  && contains(password, attrs.get(UserManagerConstants.AttributeName.USER_LOGIN.getId())));
+            check(violations, "FIRST_NAME", Boolean.TRUE.equals(policy.getDisAllowFirstName())
+                  && contains(password, attrs.get(UserManagerConstants.AttributeName.FIRSTNAME.getId())));
+            check(violations, "LAST_NAME", Boolean.TRUE.equals(policy.getDisAllowLastName())
+                  && contains(password, attrs.get(UserManagerConstants.AttributeName.LASTNAME.getId())));
+        }
+
+        return violations;
+    }
+
+    private static void check(Set<String> violations, String rule, boolean violated)
+    {
+        if (violated)
+        {
+            violations.add(rule);
+        }
+    }
+
+    private static boolean contains(String password, Object value)
+    {
+        return value != null && value.toString().length() > 0 && password.contains(value.toString().toLowerCase(Locale.ENGLISH));
+    }
+
+    private static int valueOf(Integer value, int defaultValue)
+    {
+        return (value == null) ? defaultValue : value.intValue();
+    }
+
+    private <T> T proxy(Class<T> service)
+    {
+        return service.cast(Proxy.newProxyInstance(service.getClassLoader(), new Class<?>[]{service}, new InvocationHandler()
+        {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+            {
+                if (method.getDeclaringClass() == Object.class)
+                {
+                    try
+                    {
+                        return method.invoke(InMemoryOIMServices.this, args);
+                    }
+
+                    catch (InvocationTargetException e)
+                    {
+                        throw e.getCause();
+                    }
+                }
+
+                AtomicLong count = calls.get(method.getName());
+                if (count == null)
+                {
+                    calls.putIfAbsent(method.getName(), new AtomicLong());
+                    count = calls.get(method.getName());
+                }
+                count.incrementAndGet();
+
+                return InMemoryOIMServices.this.invoke(method.getName(), args);
+            }
+        }));
+    }
+}
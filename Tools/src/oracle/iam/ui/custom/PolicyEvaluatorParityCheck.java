@@ -0,0 +1,304 @@
+package oracle.iam.ui.custom;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import oracle.iam.identity.usermgmt.api.UserManagerConstants;
+import oracle.iam.passwordmgmt.vo.PasswordPolicyInfo;
+
+/**
+ * Policy Evaluator Parity Check
+ * - Compares LocalPasswordPolicyEvaluator with the verdicts of InMemoryOIMServices over randomized corpora
+ * - Random policies: allowed and disallowed characters, every count and limit, starts with a character
+ *   and user attribute exclusions, each rule set or left unset
+ * - Per policy, a random user and passwords drawn three ways: random strings, PasswordGenerator
+ *   candidates, and candidates mutated with a user attribute or a random character
+ * - Characters include non-ASCII letters, symbols and digits so classification and unicode counts are exercised
+ * - Compares validity and the exact set of violated rules; prints the first mismatches and exits with 1 if any
+ * - Also checks that unmodified PasswordGenerator candidates never violate a rule the generator guarantees, so a
+ *   classification the generator and the evaluator disagree on is caught even though both evaluators agree
+ * - The first policy allows a few non-ASCII letters, symbols and digits and requires special characters
+ *
+ * Usage:
+ *   java oracle.iam.ui.custom.PolicyEvaluatorParityCheck [--policies 2000] [--passwords 500] [--seed n]
+ *   Policies, users and random strings are reproducible from the seed; generated candidates are not.
+ */
+public class PolicyEvaluatorParityCheck
+{
+    private static final String CHARACTERS;
+    private static final int MAX_REPORTED = 20;
+
+    // Rules every candidate of PasswordGenerator conforms to by construction
+    private static final EnumSet<LocalPasswordPolicyEvaluator.Rule> GUARANTEED = EnumSet.of(
+        LocalPasswordPolicyEvaluator.Rule.MIN_LENGTH, LocalPasswordPolicyEvaluator.Rule.MAX_LENGTH, LocalPasswordPolicyEvaluator.Rule.CHARACTERS,
+        LocalPasswordPolicyEvaluator.Rule.MIN_UPPERCASE, LocalPasswordPolicyEvaluator.Rule.MIN_LOWERCASE, LocalPasswordPolicyEvaluator.Rule.MIN_ALPHABETS,
+        LocalPasswordPolicyEvaluator.Rule.MIN_NUMERICS, LocalPasswordPolicyEvaluator.Rule.MIN_ALPHANUMERICS, LocalPasswordPolicyEvaluator.Rule.MIN_SPECIAL,
+        LocalPasswordPolicyEvaluator.Rule.MAX_SPECIAL, LocalPasswordPolicyEvaluator.Rule.STARTS_WITH_CHAR);
+
+    static
+    {
+        StringBuilder sb = new StringBuilder();
+        for (char c = 33; c < 127; c++)
+        {
+            sb.append(c);
+        }
+        // Letters, symbols, an Arabic-Indic digit, a letter without case and a symbol with case
+        CHARACTERS = sb.append("\u00e9\u00c4\u00df\u00f8\u03a9\u20ac\u00a7\u0663\u05d0\u24b6").toString();
+    }
+
+    private final Random random;
+    private long passwords;
+    private long valid;
+    private long mismatches;
+    private long generated;
+    private long generatorMismatches;
+
+    public PolicyEvaluatorParityCheck(long seed)
+    {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @param policies              Random policies to generate
+     * @param passwordsPerPolicy    Passwords to evaluate per policy
+     * @return Number of passwords the two evaluators disagree on
+     */
+    public long run(int policies, int passwordsPerPolicy)
+    {
+        for (int p = 0; p < policies; p++)
+        {
+            PasswordPolicyInfo policyInfo = (p == 0) ? nonAsciiPolicy() : randomPolicy(p);
+            HashMap<String, Object> attrs = randomUser();
+            CompiledPasswordPolicy policy = new CompiledPasswordPolicy(policyInfo);
+            LocalPasswordPolicyEvaluator evaluator = new LocalPasswordPolicyEvaluator(policy,
+                                                                                      (String)attrs.get(UserManagerConstants.AttributeName.USER_LOGIN.getId()),
+                                                                                      (String)attrs.get(UserManagerConstants.AttributeName.FIRSTNAME.getId()),
+                                                                                      (String)attrs.get(UserManagerConstants.AttributeName.LASTNAME.getId()));
+
+            PasswordGenerator generator;
+            try
+            {
+                generator = new PasswordGenerator(policy);
+            }
+
+            catch (IllegalStateException e)
+            {
+                generator = null;
+            }
+
+            for (int i = 0; i < passwordsPerPolicy; i++)
+            {
+                char[] pwd = randomPassword(generator, attrs);
+                Set<String> expected = InMemoryOIMServices.violations(policyInfo, attrs, pwd);
+                LocalPasswordPolicyEvaluator.Result actual = evaluator.evaluate(pwd, pwd.length);
+
+                passwords++;
+                valid += actual.isPasswordValid() ? 1 : 0;
+                if (!expected.equals(names(actual.getViolations())) || expected.isEmpty() != evaluator.accepts(pwd, pwd.length))
+                {
+                    if (++mismatches <= MAX_REPORTED)
+                    {
+                        System.out.println("MISMATCH password=" + new String(pwd) + " expected=" + expected + " actual=" + actual.getViolations()
+                                           + " user=" + attrs + " " + policy);
+                    }
+                }
+            }
+
+            if (generator != null)
+            {
+                checkGenerator(generator, evaluator, policy, passwordsPerPolicy);
+            }
+        }
+
+        System.out.println(String.format("Policies: %d, passwords: %d, valid: %d, mismatches: %d", policies, passwords, valid, mismatches));
+        System.out.println(String.format("Generated candidates: %d, violating a guaranteed rule: %d", generated, generatorMismatches));
+        return mismatches + generatorMismatches;
+    }
+
+    /**
+     * Candidates straight from the generator must conform to every rule it guarantees
+     */
+    private void checkGenerator(PasswordGenerator generator, LocalPasswordPolicyEvaluator evaluator, CompiledPasswordPolicy policy, int candidates)
+    {
+        char[] pwd = generator.newBuffer();
+        for (int i = 0; i < candidates; i++)
+        {
+            generator.generate(pwd);
+            generated++;
+
+            EnumSet<LocalPasswordPolicyEvaluator.Rule> violated = evaluator.evaluate(pwd, pwd.length).getViolations();
+            violated.retainAll(GUARANTEED);
+            if (!violated.isEmpty() && ++generatorMismatches <= MAX_REPORTED)
+            {
+                System.out.println("GENERATOR password=" + new String(pwd) + " violates=" + violated + " " + policy);
+            }
+        }
+    }
+
+    /**
+     * Accented letters and a non-ASCII digit must not be placed as the required special characters
+     */
+    private static PasswordPolicyInfo nonAsciiPolicy()
+    {
+        PasswordPolicyInfo info = new PasswordPolicyInfo();
+        info.setName("nonAscii");
+        LinkedHashSet<Character> allowed = new LinkedHashSet<Character>();
+        for (char c : "abcdefghijABCDEFGHIJ0123456789!#\u00e9\u00c4\u0663\u05d0\u24b6".toCharArray())
+        {
+            allowed.add(c);
+        }
+        info.setAllowedChars(allowed);
+        info.setMaxLength(12);
+        info.setMinSpecialChars(2);
+        info.setMaxSpecialChars(3);
+        info.setMinNumerics(1);
+        info.setMinUppercase(1);
+        return info;
+    }
+
+    private PasswordPolicyInfo randomPolicy(int index)
+    {
+        PasswordPolicyInfo info = new PasswordPolicyInfo();
+        info.setName("random" + index);
+
+        if (random.nextBoolean())
+        {
+            LinkedHashSet<Character> allowed = new LinkedHashSet<Character>();
+            double share = 0.3 + 0.7 * random.nextDouble();
+            for (int i = 0; i < CHARACTERS.length(); i++)
+            {
+                if (random.nextDouble() < share)
+                {
+                    allowed.add(CHARACTERS.charAt(i));
+                }
+            }
+            info.setAllowedChars(allowed);
+        }
+
+        if (random.nextBoolean())
+        {
+            LinkedHashSet<Character> disallowed = new LinkedHashSet<Character>();
+            for (int i = random.nextInt(6); i > 0; i--)
+            {
+                disallowed.add(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+            }
+            info.setDisAllowedChars(disallowed);
+        }
+
+        Integer minLength = optional(0, 12);
+        info.setMinLength(minLength);
+        info.setMaxLength(random.nextBoolean() ? null : Integer.valueOf(((minLength == null) ? 0 : minLength.intValue()) + random.nextInt(20)));
+        info.setMinUppercase(optional(0, 3));
+        info.setMinLowercase(optional(0, 3));
+        info.setMinAlphabets(optional(0, 5));
+        info.setMinNumerics(optional(0, 3));
+        info.setMinAlphaNumerics(optional(0, 6));
+        info.setMinSpecialChars(optional(0, 3));
+        info.setMaxSpecialChars(optional(0, 6));
+        info.setMinUnicode(optional(0, 2));
+        info.setMaxUnicode(optional(0, 3));
+        info.setMaxRepeated(optional(1, 4));
+        info.setMinUnique(optional(0, 12));
+        info.setStartsWithChar(optionalFlag());
+        info.setDisAllowUserId(optionalFlag());
+        info.setDisAllowFirstName(optionalFlag());
+        info.setDisAllowLastName(optionalFlag());
+        return info;
+    }
+
+    private HashMap<String, Object> randomUser()
+    {
+        HashMap<String, Object> attrs = new HashMap<String, Object>();
+        attrs.put(UserManagerConstants.AttributeName.USER_LOGIN.getId(), randomString(2 + random.nextInt(6)).toUpperCase());
+        attrs.put(UserManagerConstants.AttributeName.FIRSTNAME.getId(), random.nextInt(10) == 0 ? null : randomString(1 + random.nextInt(5)));
+        attrs.put(UserManagerConstants.AttributeName.LASTNAME.getId(), random.nextInt(10) == 0 ? "" : randomString(1 + random.nextInt(5)));
+        return attrs;
+    }
+
+    private char[] randomPassword(PasswordGenerator generator, HashMap<String, Object> attrs)
+    {
+        int kind = random.nextInt(10);
+        if (generator == null || kind < 4)
+        {
+            return randomString(random.nextInt(25)).toCharArray();
+        }
+
+        char[] pwd = generator.newBuffer();
+        generator.generate(pwd);
+        if (kind < 7 || pwd.length == 0)
+        {
+            return pwd;
+        }
+
+        // Plant a user attribute in random case, or replace one character
+        String[] names = {UserManagerConstants.AttributeName.USER_LOGIN.getId(), UserManagerConstants.AttributeName.FIRSTNAME.getId(),
+                          UserManagerConstants.AttributeName.LASTNAME.getId()};
+        Object value = attrs.get(names[random.nextInt(names.length)]);
+        if (kind < 9 && value != null && value.toString().length() > 0 && value.toString().length() <= pwd.length)
+        {
+            char[] chars = value.toString().toCharArray();
+            int start = random.nextInt(pwd.length - chars.length + 1);
+            for (int i = 0; i < chars.length; i++)
+            {
+                pwd[start + i] = random.nextBoolean() ? Character.toUpperCase(chars[i]) : Character.toLowerCase(chars[i]);
+            }
+        }
+
+        else
+        {
+            pwd[random.nextInt(pwd.length)] = CHARACTERS.charAt(random.nextInt(CHARACTERS.length()));
+        }
+        return pwd;
+    }
+
+    private String randomString(int length)
+    {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+        {
+            sb.append(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+        }
+        return sb.toString();
+    }
+
+    private Integer optional(int min, int max)
+    {
+        return random.nextBoolean() ? null : Integer.valueOf(min + random.nextInt(max - min + 1));
+    }
+
+    private Boolean optionalFlag()
+    {
+        int value = random.nextInt(3);
+        return (value == 0) ? null : Boolean.valueOf(value == 1);
+    }
+
+    private static Set<String> names(EnumSet<LocalPasswordPolicyEvaluator.Rule> rules)
+    {
+        Set<String> names = new TreeSet<String>();
+        for (LocalPasswordPolicyEvaluator.Rule rule : rules)
+        {
+            names.add(rule.name());
+        }
+        return names;
+    }
+
+    public static void main(String[] args)
+    {
+        HashMap<String, String> options = new HashMap<String, String>();
+        for (int i = 0; i + 1 < args.length; i += 2)
+        {
+            options.put(args[i], args[i + 1]);
+        }
+
+        long seed = (options.get("--seed") == null) ? System.currentTimeMillis() : Long.parseLong(options.get("--seed"));
+        int policies = Integer.parseInt((options.get("--policies") == null) ? "2000" : options.get("--policies"));
+        int passwords = Integer.parseInt((options.get("--passwords") == null) ? "500" : options.get("--passwords"));
+
+        System.out.println("Seed: " + seed);
+        long mismatches = new PolicyEvaluatorParityCheck(seed).run(policies, passwords);
+        System.exit(mismatches == 0 ? 0 : 1);
+    }
+}
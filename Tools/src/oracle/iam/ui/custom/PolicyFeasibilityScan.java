@@ -0,0 +1,184 @@
+package oracle.iam.ui.custom;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import oracle.iam.identity.usermgmt.api.UserManager;
+import oracle.iam.passwordmgmt.api.PasswordMgmtService;
+import oracle.iam.platform.OIMClient;
+
+/**
+ * Password Policy Feasibility Scan
+ * - Checks, before users click reset, that a password can be generated for each user
+ * - Runs the same policy lookup and custom rules as CustomPasswordReset, without changing any password
+ * - Policies are probed once per organization; each user only costs a user lookup
+ * - Prints every user that cannot get a password or only with many attempts, then a summary per policy
+ * - Exits with 1 if any user cannot get a password, so it can gate a deployment
+ *
+ * Usage:
+ *   java -Djava.security.auth.login.config=authwl.conf oracle.iam.ui.custom.PolicyFeasibilityScan
+ *        --url t3://oimhost:14000 --user xelsysadm
+ *        (--input logins.txt | --query "Organization Name=Xellerate Users")
+ *        [--warnAttempts 3]
+ *   The password of --user is read from the OIM_PASSWORD environment variable.
+ */
+public class PolicyFeasibilityScan
+{
+    private final PasswordResetService resetService;
+    private final double warnAttempts;
+    private final Map<String, PolicySummary> policies = new LinkedHashMap<String, PolicySummary>();
+    private long lookupFailures;
+
+    /**
+     * @param resetService  Service used to look up users and policies
+     * @param warnAttempts  Users expected to need more candidates than this are reported
+     */
+    public PolicyFeasibilityScan(PasswordResetService resetService, double warnAttempts)
+    {
+        this.resetService = resetService;
+        this.warnAttempts = warnAttempts;
+    }
+
+    /**
+     * Checks every user from the source
+     * @param source    User logins to check
+     * @return Number of users that cannot get a password
+     */
+    public long run(BulkPasswordRotation.LoginSource source) throws Exception
+    {
+        long infeasible = 0;
+        try
+        {
+            String login;
+            while ((login = source.next()) != null)
+            {
+                PolicyFeasibilityAnalyzer.Result result;
+                try
+                {
+                    result = resetService.checkFeasibility(login);
+                }
+
+                catch (Exception e)
+                {
+                    lookupFailures++;
+                    System.out.println("ERROR\t" + login + "\t" + e);
+                    continue;
+                }
+
+                PolicySummary summary = policies.get(result.getPolicyName());
+                if (summary == null)
+                {
+                    summary = new PolicySummary();
+                    policies.put(result.getPolicyName(), summary);
+                }
+                summary.add(result);
+
+                if (!result.isFeasible())
+                {
+                    infeasible++;
+                    System.out.println("INFEASIBLE\t" + login + "\t" + result.getDiagnostic());
+                }
+
+                else if (result.getExpectedAttempts() > warnAttempts)
+                {
+                    System.out.println("SLOW\t" + login + "\t" + result);
+                }
+            }
+        }
+
+        finally
+        {
+            source.close();
+        }
+
+        for (Map.Entry<String, PolicySummary> entry : policies.entrySet())
+        {
+            PolicySummary summary = entry.getValue();
+            System.out.println(String.format("Policy %s: users=%d infeasible=%d worstExpectedAttempts=%.2f",
+                                             entry.getKey(), summary.users, summary.infeasible, summary.worstExpectedAttempts));
+        }
+        System.out.println(String.format("Users that could not be looked up: %d", lookupFailures));
+
+        return infeasible;
+    }
+
+    /**
+     * Verdicts of the users of one policy
+     */
+    private static class PolicySummary
+    {
+        long users;
+        long infeasible;
+        double worstExpectedAttempts = 1.0;
+
+        void add(PolicyFeasibilityAnalyzer.Result result)
+        {
+            users++;
+            if (!result.isFeasible())
+            {
+                infeasible++;
+            }
+
+            else
+            {
+                worstExpectedAttempts = Math.max(worstExpectedAttempts, result.getExpectedAttempts());
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        HashMap<String, String> options = new HashMap<String, String>();
+        for (int i = 0; i + 1 < args.length; i += 2)
+        {
+            options.put(args[i], args[i + 1]);
+        }
+
+        if (options.get("--url") == null || options.get("--user") == null
+            || (options.get("--input") == null && options.get("--query") == null))
+        {
+            System.err.println("Usage: PolicyFeasibilityScan --url <t3 url> --user <admin> (--input <file> | --query <attribute=value>) [--warnAttempts n]");
+            System.exit(2);
+        }
+
+        Hashtable<String, String> env = new Hashtable<String, String>();
+        env.put(OIMClient.JAVA_NAMING_FACTORY_INITIAL, "weblogic.jndi.WLInitialContextFactory");
+        env.put(OIMClient.JAVA_NAMING_PROVIDER_URL, options.get("--url"));
+        OIMClient client = new OIMClient(env);
+        String password = System.getenv("OIM_PASSWORD");
+        client.login(options.get("--user"), (password == null) ? new char[0] : password.toCharArray());
+        long infeasible;
+
+        try
+        {
+            UserManager userManager = client.getService(UserManager.class);
+            PasswordMgmtService pwdMgmtService = client.getService(PasswordMgmtService.class);
+
+            BulkPasswordRotation.LoginSource source;
+            if (options.get("--input") != null)
+            {
+                source = new BulkPasswordRotation.FileLoginSource(new File(options.get("--input")));
+            }
+
+            else
+            {
+                String[] query = options.get("--query").split("=", 2);
+                source = new BulkPasswordRotation.QueryLoginSource(userManager, query[0], query[1], 500);
+            }
+
+            String warnAttempts = options.get("--warnAttempts");
+            PolicyFeasibilityScan scan = new PolicyFeasibilityScan(new PasswordResetService(userManager, pwdMgmtService),
+                                                                   (warnAttempts == null) ? 3.0 : Double.parseDouble(warnAttempts));
+            infeasible = scan.run(source);
+        }
+
+        finally
+        {
+            client.logout();
+        }
+
+        System.exit(infeasible == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,343 @@
+package oracle.iam.ui.custom;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import oracle.core.ojdl.logging.ODLLevel;
+import oracle.core.ojdl.logging.ODLLogger;
+import oracle.iam.passwordmgmt.vo.PasswordPolicyInfo;
+
+/**
+ * Reset Load Test
+ * - Simulates helpdesk agents clicking Custom Password Reset at the same time
+ * - Each agent has its own reset service and actor, as each helpdesk session does, and submits to PasswordResetExecutor
+ *   and polls for the result, as CustomPasswordReset does
+ * - Runs against InMemoryOIMServices with injected latency (exponentially distributed) and failure rates per operation
+ * - A share of the clicks goes to a small set of hot users to exercise concurrent resets of the same user;
+ *   resets by different agents do not join each other
+ * - Reports throughput, p50/p95/p99/max click-to-result latency, queue wait against time on a worker,
+ *   rejections and back-end calls per reset
+ *
+ * Usage:
+ *   java oracle.iam.ui.custom.ResetLoadTest [--agents 50] [--duration 60] [--users 10000] [--hot 0.05]
+ *        [--threads 8] [--queue 64] [--think 500] [--poll 50] [--policy strict|lenient|tinyAlphabet|longMax]
+ *        [--latency getDetails=20,validatePasswordAgainstPolicy=30,changePassword=80]
+ *        [--failures changePassword=0.01]
+ *   Latencies are mean milliseconds; failures are rates between 0 and 1.
+ */
+public class ResetLoadTest
+{
+    // Logger
+    private static final ODLLogger logger = ODLLogger.getODLLogger(ResetLoadTest.class.getName());
+
+    private static final int HOT_USERS = 10;
+    private static final long PROGRESS_INTERVAL_MILLIS = 10000L;
+
+    // Agent and back-end threads draw from their own generator rather than contend on a shared one
+    private static final ThreadLocal<Random> RANDOM = new ThreadLocal<Random>()
+    {
+        @Override
+        protected Random initialValue()
+        {
+            return new Random();
+        }
+    };
+
+    private final FaultInjectingServices services;
+    private final PasswordPolicyCache policyCache = new PasswordPolicyCache(64, Long.MAX_VALUE);
+    private final UserSnapshotCache userCache;
+    private final PasswordResetExecutor executor;
+    private final ResetPipeline pipeline;
+    private final int users;
+    private final double hotShare;
+    private final long thinkMillis;
+    private final long pollMillis;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong joined = new AtomicLong();
+
+    /**
+     * @param services      Back-end stand-ins populated with users user0 .. user(users-1)
+     * @param users         Number of users
+     * @param threads       Reset worker threads
+     * @param queueCapacity Resets that may wait for a worker
+     * @param hotShare      Share of clicks that go to one of a few hot users
+     * @param thinkMillis   Mean pause of an agent between clicks
+     * @param pollMillis    Interval at which an agent polls for the result
+     */
+    public ResetLoadTest(FaultInjectingServices services, int users, int threads, int queueCapacity, double hotShare, long thinkMillis, long pollMillis)
+    {
+        this.services = services;
+        this.userCache = new UserSnapshotCache(users, 30000L);
+        this.executor = new PasswordResetExecutor(threads, queueCapacity);
+        this.pipeline = ResetPipeline.forWorkers(threads);
+        this.users = users;
+        this.hotShare = hotShare;
+        this.thinkMillis = thinkMillis;
+        this.pollMillis = pollMillis;
+    }
+
+    /**
+     * Runs the agents and prints the report
+     * @param agents            Number of concurrent agents
+     * @param durationSeconds   Duration of the run
+     * @param out               Report destination
+     */
+    public void run(int agents, long durationSeconds, PrintStream out) throws InterruptedException
+    {
+        final long start = System.currentTimeMillis();
+        final long end = start + TimeUnit.SECONDS.toMillis(durationSeconds);
+        final CountDownLatch done = new CountDownLatch(agents);
+
+        for (int i = 0; i < agents; i++)
+        {
+            final PasswordResetService resetService = new PasswordResetService(services.getUserManager(), services.getPasswordMgmtService(), policyCache, userCache, pipeline);
+            resetService.setActor("agent" + i);
+
+            Thread agent = new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        while (System.currentTimeMillis() < end)
+                        {
+                            click(resetService);
+                            pause(thinkMillis);
+                        }
+                    }
+
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            }, "Agent-" + i);
+            agent.setDaemon(true);
+            agent.start();
+        }
+
+        while (!done.await(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS))
+        {
+            logger.log(ODLLevel.NOTIFICATION, "Succeeded: {0} Failed: {1} Rejected: {2} Joined: {3}",
+                       new Object[]{succeeded.get(), failed.get(), rejected.get(), joined.get()});
+        }
+
+        executor.shutdown();
+        pipeline.shutdown();
+        report(agents, System.currentTimeMillis() - start, out);
+    }
+
+    /**
+     * One agent click: submit, poll until done, take and wipe the result
+     * @param resetService  Reset service of the agent
+     */
+    private void click(PasswordResetService resetService) throws InterruptedException
+    {
+        Random random = RANDOM.get();
+        int user = (random.nextDouble() < hotShare) ? random.nextInt(Math.min(HOT_USERS, users)) : random.nextInt(users);
+
+        long clicked = System.nanoTime();
+        PasswordResetExecutor.ResetTask task;
+        try
+        {
+            task = executor.submit(resetService, "user" + user);
+        }
+
+        catch (RejectedExecutionException e)
+        {
+            rejected.incrementAndGet();
+            return;
+        }
+
+        while (!task.isDone())
+        {
+            Thread.sleep(pollMillis);
+        }
+
+        if (task.isJoined())
+        {
+            joined.incrementAndGet();
+        }
+
+        try
+        {
+            SecureRandomSource.wipe(task.getPassword());
+            succeeded.incrementAndGet();
+        }
+
+        catch (ExecutionException e)
+        {
+            failed.incrementAndGet();
+        }
+
+        latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - clicked));
+    }
+
+    private void report(int agents, long elapsedMillis, PrintStream out)
+    {
+        long completed = succeeded.get() + failed.get();
+        double seconds = Math.max(elapsedMillis, 1L) / 1000.0;
+        // Joined resets share one back-end reset
+        long backendResets = Math.max(completed - joined.get(), 1L);
+
+        out.println(String.format("Agents: %d  Duration: %.1f s", agents, seconds));
+        out.println(String.format("Completed: %d  Succeeded: %d  Failed: %d  Rejected: %d  Joined: %d",
+                                  completed, succeeded.get(), failed.get(), rejected.get(), joined.get()));
+        out.println(String.format("Throughput: %.1f resets/s", completed / seconds));
+        out.println(String.format("Click to result (ms): p50 %.1f  p95 %.1f  p99 %.1f  max %.1f",
+                                  latency.getPercentile(50.0) / 1000.0, latency.getPercentile(95.0) / 1000.0,
+                                  latency.getPercentile(99.0) / 1000.0, latency.getMax() / 1000.0));
+
+        // Queue wait against time on a worker shows whether workers or the back end limit throughput
+        for (ResetMetrics.Phase phase : new ResetMetrics.Phase[]{ResetMetrics.Phase.QUEUE_WAIT, ResetMetrics.Phase.TOTAL})
+        {
+            LatencyHistogram histogram = ResetMetrics.getInstance().getLatency(phase);
+            out.println(String.format("  %-18s (ms): p50 %.1f  p95 %.1f  p99 %.1f  max %.1f", phase.getDisplayName(),
+                                      histogram.getPercentile(50.0) / 1000.0, histogram.getPercentile(95.0) / 1000.0,
+                                      histogram.getPercentile(99.0) / 1000.0, histogram.getMax() / 1000.0));
+        }
+
+        out.println("Back-end calls per reset:");
+        for (Map.Entry<String, Long> entry : services.getCallCounts().entrySet())
+        {
+            out.println(String.format("  %-32s %8.2f  (%d)", entry.getKey(), (double)entry.getValue() / backendResets, entry.getValue()));
+        }
+        out.println(String.format("  %-32s %8.2f", "total", (double)services.getTotalCallCount() / backendResets));
+    }
+
+    private static void pause(long meanMillis) throws InterruptedException
+    {
+        if (meanMillis > 0)
+        {
+            Thread.sleep(exponential(meanMillis));
+        }
+    }
+
+    /**
+     * @return Exponentially distributed value with the given mean, capped at 10 times the mean
+     */
+    static long exponential(long mean)
+    {
+        double u = RANDOM.get().nextDouble();
+        return Math.min((long)(-Math.log(1.0 - u) * mean), mean * 10);
+    }
+
+    /**
+     * In-memory back end with latency and failures injected per operation
+     */
+    public static class FaultInjectingServices extends InMemoryOIMServices
+    {
+        private final Map<String, Long> latencies;
+        private final Map<String, Double> failureRates;
+
+        /**
+         * @param policy        Password policy applicable to every user
+         * @param latencies     Mean latency in milliseconds by operation
+         * @param failureRates  Failure rate between 0 and 1 by operation
+         */
+        public FaultInjectingServices(PasswordPolicyInfo policy, Map<String, Long> latencies, Map<String, Double> failureRates)
+        {
+            super(policy);
+            this.latencies = latencies;
+            this.failureRates = failureRates;
+        }
+
+        @Override
+        protected Object invoke(String operation, Object[] args) throws Exception
+        {
+            Long mean = latencies.get(operation);
+            if (mean != null)
+            {
+                pause(mean);
+            }
+
+            Double failureRate = failureRates.get(operation);
+            if (failureRate != null && RANDOM.get().nextDouble() < failureRate)
+            {
+                throw new IllegalStateException("Injected " + operation + " failure");
+            }
+
+            return super.invoke(operation, args);
+        }
+    }
+
+    /**
+     * Parses "name=value,name=value"
+     */
+    private static Map<String, String> pairs(String value)
+    {
+        Map<String, String> pairs = new HashMap<String, String>();
+        if (value != null && value.trim().length() > 0)
+        {
+            for (String pair : value.split(","))
+            {
+                String[] nameValue = pair.split("=", 2);
+                pairs.put(nameValue[0].trim(), nameValue[1].trim());
+            }
+        }
+        return pairs;
+    }
+
+    private static String value(Map<String, String> options, String name, String defaultValue)
+    {
+        String value = options.get(name);
+        return (value == null) ? defaultValue : value;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        Map<String, String> options = new HashMap<String, String>();
+        for (int i = 0; i + 1 < args.length; i += 2)
+        {
+            options.put(args[i], args[i + 1]);
+        }
+
+        Map<String, Long> latencies = new HashMap<String, Long>();
+        for (Map.Entry<String, String> entry : pairs(value(options, "--latency", "getDetails=20,validatePasswordAgainstPolicy=30,changePassword=80")).entrySet())
+        {
+            latencies.put(entry.getKey(), Long.parseLong(entry.getValue()));
+        }
+
+        Map<String, Double> failureRates = new HashMap<String, Double>();
+        for (Map.Entry<String, String> entry : pairs(value(options, "--failures", "")).entrySet())
+        {
+            failureRates.put(entry.getKey(), Double.parseDouble(entry.getValue()));
+        }
+
+        // Audit events are still recorded; only writing them to the console is suppressed
+        ODLLogger.getODLLogger("oracle.iam.ui.custom.audit").setLevel(ODLLevel.WARNING);
+
+        int users = Integer.parseInt(value(options, "--users", "10000"));
+        FaultInjectingServices services = new FaultInjectingServices(SyntheticPasswordPolicies.get(value(options, "--policy", SyntheticPasswordPolicies.STRICT)), latencies, failureRates);
+        Random random = new Random(42);
+        for (int i = 0; i < users; i++)
+        {
+            // A handful of organizations, so the policy probe is made once per organization
+            services.addUser("user" + i, "First" + i, "Last" + i, "user" + i + "@example.com", String.valueOf(random.nextInt(5) + 1));
+        }
+
+        ResetLoadTest test = new ResetLoadTest(services, users,
+                                               Integer.parseInt(value(options, "--threads", "8")),
+                                               Integer.parseInt(value(options, "--queue", "64")),
+                                               Double.parseDouble(value(options, "--hot", "0.05")),
+                                               Long.parseLong(value(options, "--think", "500")),
+                                               Long.parseLong(value(options, "--poll", "50")));
+        test.run(Integer.parseInt(value(options, "--agents", "50")), Long.parseLong(value(options, "--duration", "60")), System.out);
+        ResetAuditLog.getInstance().shutdown();
+    }
+}
@@ -0,0 +1,58 @@
+package oracle.iam.ui.custom;
+
+import java.util.Map;
+
+/**
+ * Admission Control management interface
+ * - Limits can be changed at runtime from JConsole or any other JMX client; changes are not persisted
+ * - Rate limits are calls per second per OIM operation
+ */
+public interface AdmissionControlMXBean
+{
+    int getMaxConcurrent();
+
+    void setMaxConcurrent(int maxConcurrent);
+
+    int getMaxQueued();
+
+    void setMaxQueued(int maxQueued);
+
+    long getMaxWaitMillis();
+
+    void setMaxWaitMillis(long maxWaitMillis);
+
+    /**
+     * @return Calls per second by operation name; operations without a limit are not listed
+     */
+    Map<String, Double> getRateLimits();
+
+    /**
+     * @param operation     OIM operation, e.g. validatePasswordAgainstPolicy
+     * @param callsPerSecond    Sustained rate; bursts of up to one second of calls are allowed. 0 removes the limit
+     */
+    void setRateLimit(String operation, double callsPerSecond);
+
+    /**
+     * @return Calls in progress
+     */
+    int getInFlight();
+
+    /**
+     * @return Calls waiting for a rate limit token or a concurrency slot
+     */
+    int getQueueDepth();
+
+    long getAdmitted();
+
+    long getRejected();
+
+    /**
+     * @return Rejection counts by operation name
+     */
+    Map<String, Long> getRejectionsByOperation();
+
+    /**
+     * Clears the admitted and rejected counters
+     */
+    void reset();
+}
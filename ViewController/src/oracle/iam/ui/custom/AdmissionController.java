@@ -0,0 +1,443 @@
+package oracle.iam.ui.custom;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Admission Controller
+ * - Shared gate in front of the OIM calls made by the custom beans, so a mass reset cannot flood the OIM server
+ * - Token bucket rate limit per OIM operation, then a cap on concurrent calls across all operations
+ * - A call waits at most maxWaitMillis for a token and a slot, and only while fewer than maxQueued calls wait;
+ *   otherwise it is rejected with AdmissionRejectedException without calling OIM
+ * - Service handles are wrapped with guard(); every interface method is one admitted call named after the method
+ * - Published on the platform MBean server as oracle.iam.ui.custom:type=AdmissionControl; limits can be changed at runtime
+ */
+public class AdmissionController implements AdmissionControlMXBean
+{
+    public static final String OBJECT_NAME = "oracle.iam.ui.custom:type=AdmissionControl";
+
+    static final int DEFAULT_MAX_CONCURRENT = 16;
+    static final int DEFAULT_MAX_QUEUED = 64;
+    static final long DEFAULT_MAX_WAIT_MILLIS = 2000L;
+
+    private static final AdmissionController INSTANCE = new AdmissionController();
+
+    private final Object slots = new Object();
+    private int inFlight; // Guarded by slots
+    private volatile int maxConcurrent = DEFAULT_MAX_CONCURRENT;
+    private volatile int maxQueued = DEFAULT_MAX_QUEUED;
+    private volatile long maxWaitMillis = DEFAULT_MAX_WAIT_MILLIS;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<String, TokenBucket>();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final ConcurrentHashMap<String, AtomicLong> rejectionsByOperation = new ConcurrentHashMap<String, AtomicLong>();
+
+    AdmissionController()
+    {
+    }
+
+    /**
+     * Controller shared by all beans and services
+     * @return Admission controller
+     */
+    public static AdmissionController getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Wraps an OIM service handle so each of its calls is admitted first
+     * @param service   Service interface, e.g. UserManager.class
+     * @param target    Service handle
+     * @return Guarded handle
+     */
+    public <T> T guard(Class<T> service, final T target)
+    {
+        return service.cast(Proxy.newProxyInstance(service.getClassLoader(), new Class<?>[]{service}, new InvocationHandler()
+        {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+            {
+                if ("equals".equals(method.getName()) && method.getParameterTypes().length == 1)
+                {
+                    return proxy == args[0];
+                }
+
+                else if ("hashCode".equals(method.getName()) && method.getParameterTypes().length == 0)
+                {
+                    return System.identityHashCode(proxy);
+                }
+
+                boolean guarded = method.getDeclaringClass() != Object.class;
+                if (guarded)
+                {
+                    enter(method.getName());
+                }
+
+                try
+                {
+                    return method.invoke(target, args);
+                }
+
+                catch (InvocationTargetException e)
+                {
+                    throw e.getCause();
+                }
+
+                finally
+                {
+                    if (guarded)
+                    {
+                        exit();
+                    }
+                }
+            }
+        }));
+    }
+
+    /**
+     * Waits until a call may be made; must be followed by exit() once the call completes
+     * @param operation     OIM operation, e.g. changePassword
+     * @throws AdmissionRejectedException   Rate limit, concurrency cap or wait queue is saturated
+     */
+    public void enter(String operation)
+    {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+
+        TokenBucket bucket = buckets.get(operation);
+        if (bucket == null)
+        {
+            acquireSlot(operation, deadline);
+            return;
+        }
+
+        long waitNanos = bucket.reserve(deadline);
+        if (waitNanos < 0)
+        {
+            throw reject(operation, "rate limit of " + bucket.callsPerSecond + " calls per second");
+        }
+
+        // A call that is not made gives its token back
+        try
+        {
+            if (waitNanos > 0)
+            {
+                awaitToken(operation, waitNanos);
+            }
+            acquireSlot(operation, deadline);
+        }
+
+        catch (AdmissionRejectedException e)
+        {
+            bucket.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits in the queue until a reserved rate limit token becomes available
+     */
+    private void awaitToken(String operation, long waitNanos)
+    {
+        if (!enqueue())
+        {
+            throw reject(operation, maxQueued + " calls already waiting");
+        }
+
+        try
+        {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw reject(operation, "interrupted");
+        }
+
+        finally
+        {
+            queued.decrementAndGet();
+        }
+    }
+
+    /**
+     * Takes a concurrency slot, waiting in the queue until the deadline if none is free
+     */
+    private void acquireSlot(String operation, long deadline)
+    {
+        synchronized (slots)
+        {
+            if (hasSlot())
+            {
+                inFlight++;
+                admitted.incrementAndGet();
+                return;
+            }
+        }
+
+        if (!enqueue())
+        {
+            throw reject(operation, maxQueued + " calls already waiting");
+        }
+
+        try
+        {
+            synchronized (slots)
+            {
+                while (!hasSlot())
+                {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0)
+                    {
+                        throw reject(operation, maxConcurrent + " calls in progress");
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(slots, remaining);
+                }
+                inFlight++;
+                admitted.incrementAndGet();
+            }
+        }
+
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw reject(operation, "interrupted");
+        }
+
+        finally
+        {
+            queued.decrementAndGet();
+        }
+    }
+
+    /**
+     * Releases the slot taken by enter()
+     */
+    public void exit()
+    {
+        synchronized (slots)
+        {
+            inFlight--;
+            slots.notify();
+        }
+    }
+
+    public int getMaxConcurrent()
+    {
+        return maxConcurrent;
+    }
+
+    /**
+     * @param maxConcurrent     Calls that may be in progress at once; 0 removes the cap
+     */
+    public void setMaxConcurrent(int maxConcurrent)
+    {
+        synchronized (slots)
+        {
+            this.maxConcurrent = maxConcurrent;
+            slots.notifyAll();
+        }
+    }
+
+    public int getMaxQueued()
+    {
+        return maxQueued;
+    }
+
+    public void setMaxQueued(int maxQueued)
+    {
+        this.maxQueued = maxQueued;
+    }
+
+    public long getMaxWaitMillis()
+    {
+        return maxWaitMillis;
+    }
+
+    public void setMaxWaitMillis(long maxWaitMillis)
+    {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public Map<String, Double> getRateLimits()
+    {
+        Map<String, Double> limits = new TreeMap<String, Double>();
+        for (Map.Entry<String, TokenBucket> entry : buckets.entrySet())
+        {
+            limits.put(entry.getKey(), entry.getValue().callsPerSecond);
+        }
+        return limits;
+    }
+
+    public void setRateLimit(String operation, double callsPerSecond)
+    {
+        if (callsPerSecond > 0)
+        {
+            buckets.put(operation, new TokenBucket(callsPerSecond));
+        }
+
+        else
+        {
+            buckets.remove(operation);
+        }
+    }
+
+    public int getInFlight()
+    {
+        synchronized (slots)
+        {
+            return inFlight;
+        }
+    }
+
+    public int getQueueDepth()
+    {
+        return queued.get();
+    }
+
+    public long getAdmitted()
+    {
+        return admitted.get();
+    }
+
+    public long getRejected()
+    {
+        return rejected.get();
+    }
+
+    public Map<String, Long> getRejectionsByOperation()
+    {
+        Map<String, Long> counts = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : rejectionsByOperation.entrySet())
+        {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    public void reset()
+    {
+        admitted.set(0);
+        rejected.set(0);
+        rejectionsByOperation.clear();
+    }
+
+    /**
+     * Publishes this controller on the platform MBean server; replaces a previous registration
+     */
+    public void register() throws JMException
+    {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name))
+        {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(this, name);
+    }
+
+    public void unregister() throws JMException
+    {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name))
+        {
+            server.unregisterMBean(name);
+        }
+    }
+
+    private boolean hasSlot()
+    {
+        return maxConcurrent <= 0 || inFlight < maxConcurrent;
+    }
+
+    /**
+     * @return false if the wait queue is full
+     */
+    private boolean enqueue()
+    {
+        if (queued.incrementAndGet() > maxQueued)
+        {
+            queued.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private AdmissionRejectedException reject(String operation, String reason)
+    {
+        rejected.incrementAndGet();
+        AtomicLong count = rejectionsByOperation.get(operation);
+        if (count == null)
+        {
+            rejectionsByOperation.putIfAbsent(operation, new AtomicLong());
+            count = rejectionsByOperation.get(operation);
+        }
+        count.incrementAndGet();
+        return new AdmissionRejectedException(operation, reason);
+    }
+
+    /**
+     * Token bucket holding up to one second of calls; a caller may reserve a token that becomes available later
+     */
+    private static class TokenBucket
+    {
+        final double callsPerSecond;
+        private final double tokensPerNano;
+        private final double capacity;
+        private double tokens; // Guarded by this; negative while tokens are reserved
+        private long updated; // Guarded by this
+
+        TokenBucket(double callsPerSecond)
+        {
+            this.callsPerSecond = callsPerSecond;
+            this.tokensPerNano = callsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = Math.max(1.0, callsPerSecond);
+            this.tokens = capacity;
+            this.updated = System.nanoTime();
+        }
+
+        /**
+         * Takes a token
+         * @param deadline  System.nanoTime() by which the token must be available
+         * @return Nanoseconds to wait until the token is available; -1 if that is after the deadline and no token was taken
+         */
+        synchronized long reserve(long deadline)
+        {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - updated) * tokensPerNano);
+            updated = now;
+
+            long waitNanos = (tokens >= 1.0) ? 0 : (long)Math.ceil((1.0 - tokens) / tokensPerNano);
+            if (now + waitNanos - deadline > 0)
+            {
+                return -1;
+            }
+
+            tokens -= 1.0;
+            return waitNanos;
+        }
+
+        /**
+         * Returns a token taken by reserve for a call that was not made
+         */
+        synchronized void release()
+        {
+            tokens = Math.min(capacity, tokens + 1.0);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package oracle.iam.ui.custom;
+
+/**
+ * Thrown instead of making an OIM call when the admission controller is saturated.
+ * Unchecked so it passes through the OIM service interfaces; the call was not made and may be retried.
+ */
+public class AdmissionRejectedException extends RuntimeException
+{
+    private static final long serialVersionUID = 1L;
+
+    private final String operation;
+
+    /**
+     * @param operation     OIM operation that was rejected, e.g. changePassword
+     * @param reason        Limit that was reached
+     */
+    public AdmissionRejectedException(String operation, String reason)
+    {
+        super("OIM call " + operation + " rejected: " + reason);
+        this.operation = operation;
+    }
+
+    public String getOperation()
+    {
+        return operation;
+    }
+}
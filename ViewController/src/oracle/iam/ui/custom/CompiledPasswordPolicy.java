@@ -0,0 +1,285 @@
+package oracle.iam.ui.custom;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import oracle.iam.passwordmgmt.vo.PasswordPolicyInfo;
+
+/**
+ * Compiled Password Policy
+ * - Immutable, primitive representation of a PasswordPolicyInfo
+ * - Allowed characters as char tables per character class and as a bitmap
+ * - Lengths and required counts as ints
+ * - Also keeps the rules only needed to evaluate a password: unicode counts, disallowed characters and user attribute exclusions
+ * - classOf is the one character classification shared by the generator, the custom rules and the local evaluator
+ */
+public class CompiledPasswordPolicy
+{
+    static final String DEFAULT_SYMBOLS = "!@#$%";
+    static final String DEFAULT_POSSIBLE_CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789" + DEFAULT_SYMBOLS;
+    static final int DEFAULT_LENGTH = 32; // Used if password policy does not specify a value for max length
+
+    // Character class flags, as classified by java.lang.Character
+    static final int UPPER = 1; // Upper case, whether or not a letter
+    static final int LOWER = 2; // Lower case, whether or not a letter
+    static final int DIGIT = 4; // Digit that is not a letter
+    static final int SYMBOL = 8; // Neither letter nor digit
+    static final int ALPHABET = 16; // Letter, with or without case
+    static final int UNICODE = 32; // Outside 7-bit ASCII; in addition to one of the classes above
+
+    private final String name;
+    private final long[] allowed = new long[1024]; // One bit per char
+    private final boolean hasAllowedChars; // Otherwise any character that is not disallowed may be used
+    private final char[] disallowed; // Sorted
+
+    final char[] upper;
+    final char[] lower;
+    final char[] digits;
+    final char[] symbols;
+    final char[] alphabets;
+    final char[] alphaNumerics;
+    final char[] numbersOrSymbols;
+    final char[] all;
+
+    final int length;
+    final int minLength;
+    final int maxLength;
+    final int minUpper;
+    final int minLower;
+    final int minAlphabets;
+    final int minNumerics;
+    final int minAlphaNumerics;
+    final int minSpecial;
+    final int maxSpecial;
+    final int maxRepeated;
+    final int minUnique;
+    final int minUnicode;
+    final int maxUnicode;
+    final boolean startsWithChar;
+    final boolean disallowUserId;
+    final boolean disallowFirstName;
+    final boolean disallowLastName;
+
+    /**
+     * @param policy    Password policy returned by OIM
+     */
+    public CompiledPasswordPolicy(PasswordPolicyInfo policy)
+    {
+        LinkedHashSet<Character> allowChars = policy.getAllowedChars();
+        LinkedHashSet<Character> disallowChars = policy.getDisAllowedChars();
+        StringBuilder u = new StringBuilder(), l = new StringBuilder(), a = new StringBuilder(), d = new StringBuilder(), s = new StringBuilder();
+
+        this.hasAllowedChars = allowChars != null && !allowChars.isEmpty();
+        if (!hasAllowedChars)
+        {
+            for (int i = 0; i < DEFAULT_POSSIBLE_CHARACTERS.length(); i++)
+            {
+                add(DEFAULT_POSSIBLE_CHARACTERS.charAt(i), disallowChars, u, l, a, d, s);
+            }
+        }
+
+        else
+        {
+            for (Character c : allowChars)
+            {
+                add(c.charValue(), disallowChars, u, l, a, d, s);
+            }
+        }
+
+        this.name = nameOf(policy);
+        this.upper = toChars(u);
+        this.lower = toChars(l);
+        this.digits = toChars(d);
+        this.symbols = toChars(s);
+        this.alphabets = toChars(new StringBuilder(u).append(l).append(a));
+        this.alphaNumerics = toChars(new StringBuilder(u).append(l).append(a).append(d));
+        this.numbersOrSymbols = toChars(new StringBuilder(d).append(s));
+        this.all = toChars(new StringBuilder(u).append(l).append(a).append(d).append(s));
+
+        StringBuilder x = new StringBuilder();
+        if (disallowChars != null)
+        {
+            for (Character c : disallowChars)
+            {
+                x.append(c.charValue());
+            }
+        }
+        this.disallowed = toChars(x);
+        Arrays.sort(disallowed);
+
+        this.minLength = valueOf(policy.getMinLength(), 0);
+        this.maxLength = valueOf(policy.getMaxLength(), Integer.MAX_VALUE);
+        this.length = Math.max((policy.getMaxLength() == null) ? DEFAULT_LENGTH : maxLength, minLength);
+        this.minUpper = valueOf(policy.getMinUppercase(), 0);
+        this.minLower = valueOf(policy.getMinLowercase(), 0);
+        this.minAlphabets = valueOf(policy.getMinAlphabets(), 0);
+        this.minNumerics = valueOf(policy.getMinNumerics(), 0);
+        this.minAlphaNumerics = valueOf(policy.getMinAlphaNumerics(), 0);
+        this.minSpecial = valueOf(policy.getMinSpecialChars(), 0);
+        this.maxSpecial = valueOf(policy.getMaxSpecialChars(), Integer.MAX_VALUE);
+        this.maxRepeated = valueOf(policy.getMaxRepeated(), Integer.MAX_VALUE);
+        this.minUnique = valueOf(policy.getMinUnique(), 0);
+        this.minUnicode = valueOf(policy.getMinUnicode(), 0);
+        this.maxUnicode = valueOf(policy.getMaxUnicode(), Integer.MAX_VALUE);
+        this.startsWithChar = Boolean.TRUE.equals(policy.getStartsWithChar());
+        this.disallowUserId = Boolean.TRUE.equals(policy.getDisAllowUserId());
+        this.disallowFirstName = Boolean.TRUE.equals(policy.getDisAllowFirstName());
+        this.disallowLastName = Boolean.TRUE.equals(policy.getDisAllowLastName());
+    }
+
+    /**
+     * Policy name; used as the cache key
+     * @return Password policy name
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Cache key of a password policy
+     * @param policy    Password policy returned by OIM
+     * @return Policy name; policy id if the policy has no name
+     */
+    public static String nameOf(PasswordPolicyInfo policy)
+    {
+        return (policy.getName() != null) ? policy.getName() : String.valueOf(policy.getId());
+    }
+
+    /**
+     * Length of generated passwords; max length of the policy
+     * @return Password length
+     */
+    public int getLength()
+    {
+        return length;
+    }
+
+    /**
+     * Symbols that may be used in a generated password
+     * @return Symbols; default symbols if the policy does not allow any
+     */
+    public String getSymbols()
+    {
+        return (symbols.length == 0) ? DEFAULT_SYMBOLS : new String(symbols);
+    }
+
+    /**
+     * @param c     Character to check
+     * @return true if the character is allowed by the policy
+     */
+    public boolean isAllowed(char c)
+    {
+        return (allowed[c >>> 6] & (1L << c)) != 0;
+    }
+
+    /**
+     * Unlike isAllowed, accepts any character that is not disallowed if the policy has no allowed characters
+     * @param c     Character to check
+     * @return true if a password may contain the character
+     */
+    public boolean permits(char c)
+    {
+        return hasAllowedChars ? isAllowed(c) : Arrays.binarySearch(disallowed, c) < 0;
+    }
+
+    /**
+     * Character classes of a character; how OIM counts it against the policy
+     * @param c     Character to classify
+     * @return Exactly one of ALPHABET, DIGIT or SYMBOL, with UPPER or LOWER if the character has a case and UNICODE if it is not ASCII
+     */
+    static int classOf(char c)
+    {
+        int flags = (c > 0x7F) ? UNICODE : 0;
+        if (Character.isUpperCase(c))
+        {
+            flags |= UPPER;
+        }
+
+        else if (Character.isLowerCase(c))
+        {
+            flags |= LOWER;
+        }
+
+        if (Character.isLetter(c))
+        {
+            return flags | ALPHABET;
+        }
+
+        return flags | (Character.isDigit(c) ? DIGIT : SYMBOL);
+    }
+
+    /**
+     * @param other     Policy compiled from what OIM returned later
+     * @return true if both have the same name, characters, counts, limits and exclusions
+     */
+    public boolean hasSameRules(CompiledPasswordPolicy other)
+    {
+        return name.equals(other.name) && hasAllowedChars == other.hasAllowedChars
+            && Arrays.equals(allowed, other.allowed) && Arrays.equals(disallowed, other.disallowed)
+            && minLength == other.minLength && maxLength == other.maxLength && length == other.length
+            && minUpper == other.minUpper && minLower == other.minLower && minAlphabets == other.minAlphabets
+            && minNumerics == other.minNumerics && minAlphaNumerics == other.minAlphaNumerics
+            && minSpecial == other.minSpecial && maxSpecial == other.maxSpecial && maxRepeated == other.maxRepeated
+            && minUnique == other.minUnique && minUnicode == other.minUnicode && maxUnicode == other.maxUnicode
+            && startsWithChar == other.startsWithChar && disallowUserId == other.disallowUserId
+            && disallowFirstName == other.disallowFirstName && disallowLastName == other.disallowLastName;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CompiledPasswordPolicy[name=" + name + ", length=" + length + ", allowed=" + all.length
+            + ", minUpper=" + minUpper + ", minLower=" + minLower + ", minAlphabets=" + minAlphabets
+            + ", minNumerics=" + minNumerics + ", minAlphaNumerics=" + minAlphaNumerics
+            + ", minSpecial=" + minSpecial + ", maxSpecial=" + maxSpecial + ", maxRepeated=" + maxRepeated
+            + ", minUnique=" + minUnique + ", minUnicode=" + minUnicode + ", maxUnicode=" + maxUnicode
+            + ", startsWithChar=" + startsWithChar + ", disallowUserId=" + disallowUserId
+            + ", disallowFirstName=" + disallowFirstName + ", disallowLastName=" + disallowLastName + "]";
+    }
+
+    /**
+     * Adds an allowed character to the table of its class; upper and lower case tables only hold letters,
+     * so a character placed for one required class never counts against another
+     */
+    private void add(char c, LinkedHashSet<Character> disallowChars, StringBuilder u, StringBuilder l, StringBuilder a, StringBuilder d, StringBuilder s)
+    {
+        if ((disallowChars != null && disallowChars.contains(Character.valueOf(c))) || isAllowed(c))
+        {
+            return;
+        }
+
+        allowed[c >>> 6] |= (1L << c);
+        int flags = classOf(c);
+        if ((flags & ALPHABET) == 0)
+        {
+            ((flags & DIGIT) != 0 ? d : s).append(c);
+        }
+
+        else if ((flags & UPPER) != 0)
+        {
+            u.append(c);
+        }
+
+        else if ((flags & LOWER) != 0)
+        {
+            l.append(c);
+        }
+
+        else
+        {
+            a.append(c); // Letter without case
+        }
+    }
+
+    private static char[] toChars(StringBuilder sb)
+    {
+        char[] chars = new char[sb.length()];
+        sb.getChars(0, sb.length(), chars, 0);
+        return chars;
+    }
+
+    private static int valueOf(Integer value, int defaultValue)
+    {
+        return (value == null) ? defaultValue : value.intValue();
+    }
+}
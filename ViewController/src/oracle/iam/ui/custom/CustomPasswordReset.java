@@ -1,28 +1,29 @@
 package oracle.iam.ui.custom;
 
 import java.text.MessageFormat;
-import java.util.HashSet;
-import java.util.LinkedHashSet;
-import java.util.Locale;
-import java.util.Random;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import javax.faces.application.FacesMessage;
 import javax.faces.context.FacesContext;
+import oracle.adf.view.rich.component.rich.RichPoll;
+import oracle.adf.view.rich.component.rich.output.RichOutputText;
+import oracle.adf.view.rich.context.AdfFacesContext;
 import oracle.adf.view.rich.event.DialogEvent;
+import oracle.adf.view.rich.event.PollEvent;
 import oracle.core.ojdl.logging.ODLLevel;
 import oracle.core.ojdl.logging.ODLLogger;
-import oracle.iam.identity.exception.NoSuchUserException;
-import oracle.iam.identity.exception.UserLookupException;
-import oracle.iam.identity.usermgmt.api.UserManager;
 import oracle.iam.identity.usermgmt.api.UserManagerConstants;
 import oracle.iam.identity.usermgmt.vo.User;
-import oracle.iam.passwordmgmt.api.PasswordMgmtService;
-import oracle.iam.passwordmgmt.vo.PasswordPolicyInfo;
-import oracle.iam.passwordmgmt.vo.ValidationResult;
-import oracle.iam.ui.platform.model.common.OIMClientFactory;
 
 /**
  * Custom Password Reset
  * - Generates a password that conforms to password policy
+ * - Resets run in the background through the stages of ResetPipeline; the page polls for completion
+ * - Resets of a user the same helpdesk user is already resetting join the reset in progress
+ * - Only the ticket of the reset is kept in page flow scope; the result stays with PasswordResetExecutor until taken
+ * - The user key and organization shown on the page let the reset resolve the password policy while it fetches the user
  * - Displays generated password in UI
  */
 public class CustomPasswordReset 
@@ -30,9 +31,24 @@ public class CustomPasswordReset
     // Logger
     private static final ODLLogger logger = ODLLogger.getODLLogger(CustomPasswordReset.class.getName());
     
-    private static final String DEFAULT_SYMBOLS = "!@#$%";
-    private static final String DEFAULT_POSSIBLE_CHARACTERS="abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789" + DEFAULT_SYMBOLS;
     private static final String USER_LOGIN_ATTRIBUTE = "userLogin";
+
+    // Attribute bindings of the user details page, on the same iterator as userLogin
+    private static final String USER_KEY_ATTRIBUTE = "usr_key";
+    private static final String ORGANIZATION_ATTRIBUTE = "act_key";
+    
+    // Page flow scope keys
+    private static final String RESET_TICKET = "customPasswordResetTicket";
+    private static final String RESET_STATUS = "customPasswordResetStatus";
+    
+    private static final String BUSY_MESSAGE = "Too many password resets are in progress. Please try again in a moment.";
+    
+    private static final int POLL_INTERVAL_MILLIS = 1000;
+    private static final int POLL_DISABLED = -1;
+    
+    // Component bindings
+    private RichOutputText statusText;
+    private RichPoll poll;
     
     /**
      * Confimation dialog box 
@@ -51,19 +67,30 @@ public class CustomPasswordReset
                 String userLogin = FacesUtils.getAttributeBindingValue(USER_LOGIN_ATTRIBUTE, String.class).trim();
                 logger.log(ODLLevel.NOTIFICATION, "Target User Login: [{0}]", new Object[]{userLogin});
                 
-                // Generate Random Password
-                String generatedPassword = generatePassword(userLogin);
-                logger.log(ODLLevel.TRACE, "Generated Password: [{0}]", new Object[]{generatedPassword});
+                // A double-click in this page flow keeps waiting on the reset it already submitted
+                PasswordResetExecutor.ResetTask pending = PasswordResetExecutor.getInstance().getTask((String)getPageFlowScope().get(RESET_TICKET));
+                if (pending != null && !pending.isDone() && pending.getUserLogin().equalsIgnoreCase(userLogin))
+                {
+                    logger.exiting(this.getClass().getName(), "confirmReset");
+                    return;
+                }
+
+                // Generate Random Password and change Target User's password in the background
+                PasswordResetService resetService = OIMServices.getCurrent().getPasswordResetService();
+                PasswordResetExecutor.ResetTask task = PasswordResetExecutor.getInstance().submit(resetService, userLogin, getTargetHintFromBindings());
                 
-                // Change Target User's password
-                UserManager userManager = OIMClientFactory.getUserManager();
-                userManager.changePassword(userLogin, generatedPassword.toCharArray(), true, false);
-               
-                this.setFacesMessage(MessageFormat.format("Generated password for {0}: {1}", userLogin, generatedPassword));
-                logger.log(ODLLevel.NOTIFICATION, "Reset password for user {0}", new Object[]{userLogin});
+                getPageFlowScope().put(RESET_TICKET, task.getTicket());
+                this.setStatus(MessageFormat.format(task.isJoined() ? "Password reset for {0} already in progress..." : "Resetting password for {0}...", userLogin), POLL_INTERVAL_MILLIS);
             }
         } 
         
+        catch (RejectedExecutionException e) 
+        {
+            ResetMetrics.getInstance().recordFailure(e);
+            this.setFacesMessage(BUSY_MESSAGE);
+            logger.log(ODLLevel.WARNING, "Password reset rejected", e);
+        }
+        
         catch (Exception e) 
         {
             this.setFacesMessage("An internal error has occourred: " + e.getLocalizedMessage());
@@ -73,6 +100,101 @@ public class CustomPasswordReset
         logger.exiting(this.getClass().getName(), "confirmReset");
     }
 
+    /**
+     * Poll listener; displays the result once the reset submitted by confirmReset completes
+     * @param evt
+     */
+    public void pollReset(PollEvent evt)
+    {
+        Map<String, Object> pageFlowScope = getPageFlowScope();
+        String ticket = (String)pageFlowScope.get(RESET_TICKET);
+        PasswordResetExecutor.ResetTask task = PasswordResetExecutor.getInstance().getTask(ticket);
+
+        if (task == null)
+        {
+            // Result not taken in time and wiped
+            if (ticket != null)
+            {
+                pageFlowScope.remove(RESET_TICKET);
+                this.setFacesMessage("The result of the password reset is no longer available. Please reset the password again.");
+            }
+            this.setStatus(null, POLL_DISABLED);
+            return;
+        }
+
+        if (!task.isDone())
+        {
+            return;
+        }
+
+        pageFlowScope.remove(RESET_TICKET);
+        String userLogin = task.getUserLogin();
+        char[] generatedPassword = null;
+
+        try
+        {
+            generatedPassword = task.getPassword();
+            this.setFacesMessage(MessageFormat.format("Generated password for {0}: {1}", userLogin, new String(generatedPassword)));
+            this.setStatus(MessageFormat.format("Password reset for {0}", userLogin), POLL_DISABLED);
+        }
+
+        catch (ExecutionException e)
+        {
+            // Already counted and audited by the reset service
+            if (e.getCause() instanceof AdmissionRejectedException)
+            {
+                this.setFacesMessage(BUSY_MESSAGE);
+                this.setStatus(null, POLL_DISABLED);
+                logger.log(ODLLevel.WARNING, "Password reset rejected: {0}", new Object[]{e.getCause().getMessage()});
+                return;
+            }
+
+            this.setFacesMessage("An internal error has occourred: " + e.getCause().getLocalizedMessage());
+            this.setStatus(null, POLL_DISABLED);
+            logger.log(ODLLevel.ERROR, "", e.getCause());
+        }
+
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        finally
+        {
+            SecureRandomSource.wipe(generatedPassword);
+        }
+    }
+
+    /**
+     * The page may have been open a long time; the reset only uses these to start resolving the policy,
+     * and confirms them against the user it fetches
+     * @return User key and organization of the target user the page binds; null if the page does not bind the user key
+     */
+    private User getTargetHintFromBindings()
+    {
+        try
+        {
+            Object userKey = FacesUtils.getAttributeBindingValue(USER_KEY_ATTRIBUTE, Object.class);
+            if (userKey == null)
+            {
+                return null;
+            }
+
+            HashMap<String, Object> attributes = new HashMap<String, Object>();
+            attributes.put(UserManagerConstants.AttributeName.USER_KEY.getId(), userKey.toString());
+            Object orgKey = FacesUtils.getAttributeBindingValue(ORGANIZATION_ATTRIBUTE, Object.class);
+            attributes.put(UserManagerConstants.AttributeName.USER_ORGANIZATION.getId(), (orgKey == null) ? null : orgKey.toString());
+            return new User(userKey.toString(), attributes);
+        }
+
+        catch (IllegalArgumentException e)
+        {
+            logger.log(ODLLevel.TRACE, "Attribute binding {0} or {1} not found; the policy is resolved after the user is fetched",
+                       new Object[]{USER_KEY_ATTRIBUTE, ORGANIZATION_ATTRIBUTE});
+            return null;
+        }
+    }
+
     /**
      * Used to display results in the UI 
      * @param msg   Message to display in UI
@@ -87,130 +209,47 @@ public class CustomPasswordReset
         FacesContext context = FacesContext.getCurrentInstance();
         context.addMessage(null, message);
     }
-    
+
     /**
-    * Generates a temporary password that conforms to:  
-    *  - OIM password policy that is applicable to target user
-    *  - Custom password policy rules
-    *      At least one number or symbol
-    *      The email address of the user [IGNORE CASE]
-    *      The user's display name [IGNORE CASE]; Remove spaces
-    * @param userLogin    OIM.User Login (USR_LOGIN)
-    * @return Generated password
-    */
-   private String generatePassword(String userLogin) throws NoSuchUserException, UserLookupException, Exception 
-   {
-       logger.log(ODLLevel.NOTIFICATION, "Enter generatePassword with parameter: [User Login: {0}]", new Object[]{userLogin});
-       String passwordVal = "";
-       ValidationResult vr = null;
-       boolean matchCustomPasswordPolicy = false;
-               
-       // Get OIM Services
-       PasswordMgmtService pwdMgmtService = OIMClientFactory.getPasswordMgmtService();
-       UserManager userManager = OIMClientFactory.getUserManager();
-               
-       try 
-       {
-           // Fetch target user attributes
-           HashSet<String> retUserAttrs = new HashSet<String>();
-           retUserAttrs.add(UserManagerConstants.AttributeName.USER_KEY.getId()); // usr_key
-           retUserAttrs.add(UserManagerConstants.AttributeName.FIRSTNAME.getId());
-           retUserAttrs.add(UserManagerConstants.AttributeName.LASTNAME.getId());
-           retUserAttrs.add(UserManagerConstants.AttributeName.DISPLAYNAME.getId());
-           retUserAttrs.add(UserManagerConstants.AttributeName.EMAIL.getId());
-           User user = userManager.getDetails(userLogin, retUserAttrs, true);
-           logger.log(ODLLevel.NOTIFICATION, "User: {0}", new Object[]{user});
-           
-           // Make dummy call in order to obtain the password policy applicable to current user
-           vr = pwdMgmtService.validatePasswordAgainstPolicy(passwordVal.toCharArray(), user.getEntityId(), Locale.getDefault(), false);
-           PasswordPolicyInfo userPwdPolicy = vr.getPasswordPolicyInfo();
-           
-           // Validation check on password policy
-           /*if (userPwdPolicy.getMaxLength() == null) 
-           {
-               throw new Exception("Password Policy must have a value for max length since the max property is used as the length of the generated password.");
-           }
-           
-           if (userPwdPolicy.getAllowedChars().size() == 0) 
-           {
-               throw new Exception("Password Policy must have some value for allow character property");
-           }*/
-           
-           // Fetch Password Policy data to use for generateing the password
-           int maxPwdLength = (userPwdPolicy.getMaxLength() == null) ? 32 : userPwdPolicy.getMaxLength(); // Use length 32 if password policy does not specify a value for max length
-           LinkedHashSet<Character> allowChars = userPwdPolicy.getAllowedChars(); 
-           logger.log(ODLLevel.NOTIFICATION, "Allow Characters: [{0}] Size: [{1}] ", new Object[]{allowChars, allowChars.size()});
-           logger.log(ODLLevel.NOTIFICATION, "Max Password Length: {0}", new Object[]{maxPwdLength});
-           
-           // Generator object
-           Random rand = new Random();
-           
-           // Possible characters for generated password
-           char[] possibleCharsForPwd = (userPwdPolicy.getAllowedChars().size() == 0) ? DEFAULT_POSSIBLE_CHARACTERS.toCharArray() : new char[allowChars.size()];
-           String symbols = "";
-           int count = 0;
-           
-           // Put allow characters into an array
-           for (Character c : allowChars) 
-           {
-               possibleCharsForPwd[count] = c.charValue();
-               count++;
-               
-               // Check if character is a symbol; assume non alpha-numeric characters are symbols
-               if (!(String.valueOf(c).matches("^[a-zA-Z0-9]*$")))
-               {
-                   symbols = symbols + String.valueOf(c); // add character to string
-               }
-           }
-           
-           symbols = symbols.equals("") ? DEFAULT_SYMBOLS : symbols; // default symbols
-           logger.log(ODLLevel.NOTIFICATION, "Possible characters for generated password: {0}", new Object[]{possibleCharsForPwd});
-           logger.log(ODLLevel.NOTIFICATION, "Symbols: {0}", new Object[]{symbols});
-           
-           logger.info("Begin random password generation iteration");
-           do 
-           {
-               char ch;
-               passwordVal = "";
-                   
-               // Construct random password; Use max length as the size of the genereated password
-               for (int i = 0; i < maxPwdLength; i++) 
-               {
-                   ch = possibleCharsForPwd[rand.nextInt(possibleCharsForPwd.length - 1)];
-                   passwordVal = passwordVal + Character.toString(ch); 
-               }
-
-               // Check against OIM password policy that is applicable to user
-               vr = pwdMgmtService.validatePasswordAgainstPolicy(passwordVal.toCharArray(), user.getEntityId(), Locale.getDefault(), false);
-               logger.log(ODLLevel.NOTIFICATION, "Password Policy: {0}", new Object[]{vr.getPasswordPolicyInfo()});
-               logger.log(ODLLevel.NOTIFICATION, "Does password conform to OIM password policy? {0}", new Object[]{vr.isPasswordValid()});
-               
-               // Check against custom password policy rules
-               // At least one number or symbol
-               // The email address of the user [IGNORE CASE]
-               // The user's display name [IGNORE CASE]; Remove spaces
-               String customPasswordPolicyRules = "^((?=.*[0-9])|(?=.*["+ symbols +"]))(?!.*(?i)(" + user.getEmail() + "))(?!.*(?i)(" + user.getDisplayName().replaceAll("\\s+","") + ")).*$";
-               logger.log(ODLLevel.NOTIFICATION, "Custom Password Policy Rule: {0}", new Object[]{customPasswordPolicyRules});
-               matchCustomPasswordPolicy = passwordVal.matches(customPasswordPolicyRules);
-               logger.log(ODLLevel.NOTIFICATION, "Does password conform to custom password policy? {0}", new Object[]{matchCustomPasswordPolicy});
-               logger.log(ODLLevel.TRACE, "Generated Password: {0}", new Object[]{passwordVal}); // TODO: Remove
-               
-           } while (vr.isPasswordValid() == false || matchCustomPasswordPolicy == false);
-
-           logger.log(ODLLevel.NOTIFICATION, "Generated password validated.");
-           return passwordVal;            
-       } 
-       
-       catch (NoSuchUserException e) 
-       {
-           logger.log(ODLLevel.SEVERE, "Failed in generatePassword()", e);
-           throw e;
-       } 
-       
-       catch (UserLookupException e) 
-       {
-           logger.log(ODLLevel.SEVERE, "Failed in generatePassword()", e);
-           throw e;
-       }
-   }
+     * Updates the status text and starts or stops polling
+     * @param status            Status to display; null to clear
+     * @param pollInterval      Poll interval in milliseconds; -1 to stop polling
+     */
+    private void setStatus(String status, int pollInterval)
+    {
+        getPageFlowScope().put(RESET_STATUS, status);
+
+        if (poll != null)
+        {
+            poll.setInterval(pollInterval);
+        }
+
+        FacesUtils.partialRender(statusText);
+        FacesUtils.partialRender(poll);
+    }
+
+    private Map<String, Object> getPageFlowScope()
+    {
+        return AdfFacesContext.getCurrentInstance().getPageFlowScope();
+    }
+
+    public void setStatusText(RichOutputText statusText)
+    {
+        this.statusText = statusText;
+    }
+
+    public RichOutputText getStatusText()
+    {
+        return statusText;
+    }
+
+    public void setPoll(RichPoll poll)
+    {
+        this.poll = poll;
+    }
+
+    public RichPoll getPoll()
+    {
+        return poll;
+    }
 }
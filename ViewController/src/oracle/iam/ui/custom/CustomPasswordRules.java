@@ -0,0 +1,291 @@
+package oracle.iam.ui.custom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import oracle.iam.identity.usermgmt.vo.User;
+
+/**
+ * Custom Password Rules
+ * - At least one number or symbol
+ * - Must not contain the email address or display name (spaces removed) of the user [IGNORE CASE]
+ *
+ * The user attributes are compiled once per user into an Aho-Corasick automaton,
+ * so a candidate is checked in a single pass over its characters without allocating.
+ * User data is matched literally; regex metacharacters have no special meaning.
+ */
+public class CustomPasswordRules
+{
+    private final String[] forbidden;  // As given, for combining with other values
+    private final char[] alphabet;     // Sorted, lower case characters used by the tokens
+    private final int width;           // alphabet.length + 1; column 0 is any other character
+    private final int[] transitions;   // state * width + column -> next state
+    private final boolean[] matches;   // state -> a forbidden token ends here
+
+    /**
+     * @param user  Target user
+     */
+    public CustomPasswordRules(User user)
+    {
+        this(user.getEmail(), user.getDisplayName());
+    }
+
+    /**
+     * @param forbidden Values that must not appear in the password; whitespace is removed, null and empty values are ignored
+     */
+    public CustomPasswordRules(String... forbidden)
+    {
+        this.forbidden = forbidden.clone();
+        List<char[]> tokens = new ArrayList<char[]>();
+        StringBuilder chars = new StringBuilder();
+
+        for (String value : forbidden)
+        {
+            if (value == null)
+            {
+                continue;
+            }
+
+            StringBuilder token = new StringBuilder(value.length());
+            for (int i = 0; i < value.length(); i++)
+            {
+                char c = value.charAt(i);
+                if (!Character.isWhitespace(c))
+                {
+                    token.append(Character.toLowerCase(c));
+                }
+            }
+
+            if (token.length() > 0)
+            {
+                tokens.add(token.toString().toCharArray());
+                chars.append(token);
+            }
+        }
+
+        this.alphabet = distinctSorted(chars);
+        this.width = alphabet.length + 1;
+
+        // Trie
+        int maxStates = 1;
+        for (char[] token : tokens)
+        {
+            maxStates += token.length;
+        }
+
+        int[] trie = new int[maxStates * width];
+        boolean[] terminal = new boolean[maxStates];
+        int states = 1;
+
+        for (char[] token : tokens)
+        {
+            int state = 0;
+            for (char c : token)
+            {
+                int col = column(c);
+                if (trie[state * width + col] == 0)
+                {
+                    trie[state * width + col] = states++;
+                }
+                state = trie[state * width + col];
+            }
+            terminal[state] = true;
+        }
+
+        // Failure links folded into a complete transition table (breadth first)
+        int[] fail = new int[states];
+        int[] queue = new int[states];
+        int head = 0, tail = 0;
+
+        for (int col = 1; col < width; col++)
+        {
+            int next = trie[col];
+            if (next != 0)
+            {
+                queue[tail++] = next;
+            }
+        }
+
+        while (head < tail)
+        {
+            int state = queue[head++];
+            terminal[state] |= terminal[fail[state]];
+
+            for (int col = 1; col < width; col++)
+            {
+                int next = trie[state * width + col];
+                if (next != 0)
+                {
+                    fail[next] = trie[fail[state] * width + col];
+                    queue[tail++] = next;
+                }
+
+                else
+                {
+                    trie[state * width + col] = trie[fail[state] * width + col];
+                }
+            }
+        }
+
+        this.transitions = Arrays.copyOf(trie, states * width);
+        this.matches = Arrays.copyOf(terminal, states);
+    }
+
+    /**
+     * @param more  Further values that must not appear in the password
+     * @return Rules that forbid the values of these rules and more
+     */
+    CustomPasswordRules and(String... more)
+    {
+        if (more.length == 0)
+        {
+            return this;
+        }
+
+        String[] values = Arrays.copyOf(forbidden, forbidden.length + more.length);
+        System.arraycopy(more, 0, values, forbidden.length, more.length);
+        return new CustomPasswordRules(values);
+    }
+
+    /**
+     * Checks a candidate against the custom password policy rules
+     * @param pwd   Candidate password
+     * @param len   Number of characters of pwd to check
+     * @return true if the candidate conforms
+     */
+    public boolean accepts(char[] pwd, int len)
+    {
+        return hasNumberOrSymbol(pwd, len) && !containsForbidden(pwd, len);
+    }
+
+    /**
+     * @return true if a number or symbol is present
+     */
+    boolean hasNumberOrSymbol(char[] pwd, int len)
+    {
+        for (int i = 0; i < len; i++)
+        {
+            if ((CompiledPasswordPolicy.classOf(pwd[i]) & CompiledPasswordPolicy.ALPHABET) == 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if a forbidden user attribute is present [IGNORE CASE]
+     */
+    boolean containsForbidden(char[] pwd, int len)
+    {
+        int state = 0;
+        for (int i = 0; i < len; i++)
+        {
+            state = transitions[state * width + column(Character.toLowerCase(pwd[i]))];
+            if (matches[state])
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Probability that a password contains no forbidden user attribute when each of its characters
+     * is drawn uniformly and independently from chars; 0 only if every such password contains one
+     * @param chars     Characters a password is made of
+     * @param len       Password length
+     * @return Probability between 0 and 1
+     */
+    double avoidanceProbability(char[] chars, int len)
+    {
+        int states = matches.length;
+        if (states == 1 || chars.length == 0)
+        {
+            return (chars.length == 0 && len > 0) ? 0.0 : 1.0;
+        }
+
+        // Characters that lead to the same transitions are grouped by column
+        double[] columnShare = new double[width];
+        for (char c : chars)
+        {
+            columnShare[column(Character.toLowerCase(c))] += 1.0 / chars.length;
+        }
+
+        double[] current = new double[states];
+        double[] next = new double[states];
+        boolean[] reachable = new boolean[states];
+        boolean[] nextReachable = new boolean[states];
+        current[0] = 1.0;
+        reachable[0] = true;
+
+        for (int i = 0; i < len; i++)
+        {
+            Arrays.fill(next, 0.0);
+            Arrays.fill(nextReachable, false);
+            boolean any = false;
+
+            for (int state = 0; state < states; state++)
+            {
+                if (!reachable[state])
+                {
+                    continue;
+                }
+
+                for (int col = 0; col < width; col++)
+                {
+                    int target = transitions[state * width + col];
+                    if (columnShare[col] > 0 && !matches[target])
+                    {
+                        next[target] += current[state] * columnShare[col];
+                        nextReachable[target] = true;
+                        any = true;
+                    }
+                }
+            }
+
+            if (!any)
+            {
+                return 0.0;
+            }
+
+            double[] swap = current;
+            current = next;
+            next = swap;
+            boolean[] swapReachable = reachable;
+            reachable = nextReachable;
+            nextReachable = swapReachable;
+        }
+
+        double probability = 0.0;
+        for (double p : current)
+        {
+            probability += p;
+        }
+
+        // Underflow must not turn an avoidable constraint into an impossible one
+        return (probability > 0.0) ? probability : Double.MIN_VALUE;
+    }
+
+    private int column(char c)
+    {
+        int index = Arrays.binarySearch(alphabet, c);
+        return (index < 0) ? 0 : index + 1;
+    }
+
+    private static char[] distinctSorted(CharSequence chars)
+    {
+        char[] sorted = chars.toString().toCharArray();
+        Arrays.sort(sorted);
+
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++)
+        {
+            if (i == 0 || sorted[i] != sorted[i - 1])
+            {
+                sorted[count++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, count);
+    }
+}
@@ -7,8 +7,6 @@ import java.util.logging.Logger;
 import javax.faces.application.FacesMessage;  
 import javax.faces.context.FacesContext;  
 import oracle.adf.view.rich.event.DialogEvent;  
-import oracle.iam.identity.usermgmt.api.UserManager;  
-import oracle.iam.ui.platform.model.common.OIMClientFactory; // /home/oracle/Oracle/Middleware/Oracle_IDM1//server/modules/oracle.iam.ui.model_11.1.2/adflibPlatformModel.jar
 
 public class CustomReqBean 
 {
@@ -28,14 +26,20 @@ public class CustomReqBean
                  
                    String userLogin  = FacesUtils.getAttributeBindingValue("userLogin",String.class).trim();  
                      
-                   UserManager userMgtService = OIMClientFactory.getUserManager();     
-                   userMgtService.resetPassword(userLogin,true,true);  
+                   // OIM generates the password and notifies the user; counted and audited by the reset service
+                   OIMServices.getCurrent().getPasswordResetService().resetPasswordByOIM(userLogin,true);
      
                    this.setFacesMessage("Password for user "+userLogin+" has been reset successfully!");  
                      
-                   logger.logp(Level.FINEST, this.getClass().getName(), "confirmReset", "Reset password for user "+userLogin);  
+                   if (logger.isLoggable(Level.FINEST)) {
+                       logger.logp(Level.FINEST, this.getClass().getName(), "confirmReset", "Reset password for user "+userLogin);  
+                   }
                }  
            }  
+           catch (AdmissionRejectedException e) {
+               this.setFacesMessage("Too many password resets are in progress. Please try again in a moment.");
+               logger.logp(Level.WARNING, this.getClass().getName(), "confirmReset", e.getMessage());
+           }
            catch (Exception e) {  
                this.setFacesMessage("An internal error has occourred: "+e.getLocalizedMessage());  
                logger.logp(Level.SEVERE, this.getClass().getName(), "confirmReset", "Error changing user status",e);     
@@ -1,6 +1,10 @@
 package oracle.iam.ui.custom;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.ResourceBundle;
 import javax.el.ELContext;
@@ -24,6 +28,15 @@ import oracle.jbo.uicli.binding.JUEventBinding;
 
 
 public class FacesUtils {
+    // Parsed expressions are shared by all requests; bounded in case expressions are built dynamically
+    private static final int MAX_CACHED_EXPRESSIONS = 256;
+    private static final Map<String, Object> expressionCache =
+        new LruMap<String, Object>(MAX_CACHED_EXPRESSIONS);
+
+    // Request map key of the control bindings resolved during the current request
+    private static final String BINDING_MEMO_KEY =
+        FacesUtils.class.getName() + ".controlBindings";
+
     private FacesUtils() {
         // do not instantiate
         throw new AssertionError();
@@ -81,11 +94,22 @@ public class FacesUtils {
         }
     }
 
+    /*
+     * Gets control binding; resolved once per binding container and request.
+     */
     public static ControlBinding getControlBinding(String name) {
-        ControlBinding crtlBinding = getBindings().getControlBinding(name);
+        DCBindingContainer bindings = getBindings();
+        Map<String, ControlBinding> memo = getBindingMemo(bindings);
+        ControlBinding crtlBinding = (memo == null) ? null : memo.get(name);
         if (crtlBinding == null) {
-            throw new IllegalArgumentException("Control Binding '" + name +
-                                               "' not found");
+            crtlBinding = bindings.getControlBinding(name);
+            if (crtlBinding == null) {
+                throw new IllegalArgumentException("Control Binding '" + name +
+                                                   "' not found");
+            }
+            if (memo != null) {
+                memo.put(name, crtlBinding);
+            }
         }
         return crtlBinding;
     }
@@ -103,13 +127,10 @@ public class FacesUtils {
 
     public static DCBindingContainer getBindings() {
         FacesContext fc = FacesContext.getCurrentInstance();
-        ExpressionFactory exprfactory =
-            fc.getApplication().getExpressionFactory();
         ELContext elctx = fc.getELContext();
 
         ValueExpression valueExpression =
-            exprfactory.createValueExpression(elctx, "#{bindings}",
-                                              Object.class);
+            getValueExpression(fc, "#{bindings}", Object.class);
 
         DCBindingContainer dcbinding =
             (DCBindingContainer)valueExpression.getValue(elctx);
@@ -123,11 +144,9 @@ public class FacesUtils {
     public static <T> T getValueFromELExpression(String expression,
                                                  Class<T> clazz) {
         FacesContext facesContext = FacesContext.getCurrentInstance();
-        Application app = facesContext.getApplication();
-        ExpressionFactory elFactory = app.getExpressionFactory();
         ELContext elContext = facesContext.getELContext();
         ValueExpression valueExp =
-            elFactory.createValueExpression(elContext, expression, clazz);
+            getValueExpression(facesContext, expression, clazz);
         return (T)valueExp.getValue(elContext);
     }
 
@@ -137,16 +156,77 @@ public class FacesUtils {
     public static MethodExpression getMethodExpressionFromEL(String expression,
                                                              Class<?> returnType,
                                                              Class[] paramTypes) {
-        FacesContext facesContext = FacesContext.getCurrentInstance();
-        Application app = facesContext.getApplication();
-        ExpressionFactory elFactory = app.getExpressionFactory();
-        ELContext elContext = facesContext.getELContext();
-        MethodExpression methodExp =
-            elFactory.createMethodExpression(elContext, expression, returnType,
-                                             paramTypes);
+        String key =
+            "M:" + expression + ":" + (returnType == null ? null : returnType.getName()) +
+            ":" + (paramTypes == null ? null : Arrays.asList(paramTypes));
+        MethodExpression methodExp;
+        synchronized (expressionCache) {
+            methodExp = (MethodExpression)expressionCache.get(key);
+        }
+        if (methodExp == null) {
+            FacesContext facesContext = FacesContext.getCurrentInstance();
+            Application app = facesContext.getApplication();
+            ExpressionFactory elFactory = app.getExpressionFactory();
+            ELContext elContext = facesContext.getELContext();
+            methodExp =
+                elFactory.createMethodExpression(elContext, expression, returnType,
+                                                 paramTypes);
+            synchronized (expressionCache) {
+                expressionCache.put(key, methodExp);
+            }
+        }
         return methodExp;
     }
 
+    /*
+     * Gets parsed ValueExpression; parsed once per expression and expected type.
+     * Expressions are evaluated against the ELContext passed to getValue, so they can be shared.
+     */
+    private static ValueExpression getValueExpression(FacesContext facesContext,
+                                                      String expression,
+                                                      Class<?> clazz) {
+        String key = "V:" + expression + ":" + clazz.getName();
+        ValueExpression valueExp;
+        synchronized (expressionCache) {
+            valueExp = (ValueExpression)expressionCache.get(key);
+        }
+        if (valueExp == null) {
+            ExpressionFactory elFactory =
+                facesContext.getApplication().getExpressionFactory();
+            valueExp =
+                elFactory.createValueExpression(facesContext.getELContext(),
+                                                expression, clazz);
+            synchronized (expressionCache) {
+                expressionCache.put(key, valueExp);
+            }
+        }
+        return valueExp;
+    }
+
+    /*
+     * Control bindings resolved during the current request, by binding container.
+     * Returns null outside of a request.
+     */
+    private static Map<String, ControlBinding> getBindingMemo(DCBindingContainer bindings) {
+        FacesContext fc = FacesContext.getCurrentInstance();
+        if (fc == null || bindings == null) {
+            return null;
+        }
+        Map<String, Object> requestMap = fc.getExternalContext().getRequestMap();
+        Map<DCBindingContainer, Map<String, ControlBinding>> memos =
+            (Map<DCBindingContainer, Map<String, ControlBinding>>)requestMap.get(BINDING_MEMO_KEY);
+        if (memos == null) {
+            memos = new IdentityHashMap<DCBindingContainer, Map<String, ControlBinding>>();
+            requestMap.put(BINDING_MEMO_KEY, memos);
+        }
+        Map<String, ControlBinding> memo = memos.get(bindings);
+        if (memo == null) {
+            memo = new HashMap<String, ControlBinding>();
+            memos.put(bindings, memo);
+        }
+        return memo;
+    }
+
     public static ELContext getELContext() {
         return FacesContext.getCurrentInstance().getELContext();
     }
@@ -206,4 +286,23 @@ public class FacesUtils {
             throw new RuntimeException(ex);
         }
     }
+
+    /*
+     * Access ordered map that evicts the least recently used entry once full.
+     */
+    private static class LruMap<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        LruMap(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxEntries;
+        }
+    }
 }
@@ -0,0 +1,291 @@
+package oracle.iam.ui.custom;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import oracle.iam.identity.usermgmt.vo.User;
+
+/**
+ * Local Password Policy Evaluator
+ * - Evaluates a password against the OIM password policy rules in process, without a remote call
+ * - Length, allowed and disallowed characters, upper case, lower case, alphabet, numeric, alphanumeric,
+ *   special and unicode counts, repeated and unique characters, starts with a character
+ * - User attribute exclusions: must not contain the login, first name or last name of the user [IGNORE CASE]
+ * - Used to screen candidates; OIM remains authoritative and still validates the final password
+ *
+ * Characters are classified by CompiledPasswordPolicy.classOf, as the generator does: letters, digits and anything
+ * else is special, like java.lang.Character. Unicode characters are those outside 7-bit ASCII; they are also counted in their class.
+ * Repeated characters counts the occurrences of a character anywhere in the password.
+ */
+public class LocalPasswordPolicyEvaluator
+{
+    /**
+     * Password policy rules
+     */
+    public enum Rule
+    {
+        MIN_LENGTH("Minimum length"),
+        MAX_LENGTH("Maximum length"),
+        CHARACTERS("Allowed and disallowed characters"),
+        MIN_UPPERCASE("Minimum upper case characters"),
+        MIN_LOWERCASE("Minimum lower case characters"),
+        MIN_ALPHABETS("Minimum alphabet characters"),
+        MIN_NUMERICS("Minimum numeric characters"),
+        MIN_ALPHANUMERICS("Minimum alphanumeric characters"),
+        MIN_SPECIAL("Minimum special characters"),
+        MAX_SPECIAL("Maximum special characters"),
+        MIN_UNICODE("Minimum unicode characters"),
+        MAX_UNICODE("Maximum unicode characters"),
+        MAX_REPEATED("Maximum repeated characters"),
+        MIN_UNIQUE("Minimum unique characters"),
+        STARTS_WITH_CHAR("Starts with a character"),
+        USER_ID("Disallow user login"),
+        FIRST_NAME("Disallow first name"),
+        LAST_NAME("Disallow last name");
+
+        private final String displayName;
+
+        Rule(String displayName)
+        {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName()
+        {
+            return displayName;
+        }
+
+        int bit()
+        {
+            return 1 << ordinal();
+        }
+    }
+
+    private final CompiledPasswordPolicy policy;
+    private final char[] userId;    // Lower case; null if not excluded
+    private final char[] firstName; // Lower case; null if not excluded
+    private final char[] lastName;  // Lower case; null if not excluded
+
+    /**
+     * @param policy    Password policy of the target user
+     * @param user      Target user
+     */
+    public LocalPasswordPolicyEvaluator(CompiledPasswordPolicy policy, User user)
+    {
+        this(policy, user.getLogin(), user.getFirstName(), user.getLastName());
+    }
+
+    /**
+     * @param policy        Password policy of the target user
+     * @param userId        OIM.User Login (USR_LOGIN); null to skip the exclusion
+     * @param firstName     First name; null to skip the exclusion
+     * @param lastName      Last name; null to skip the exclusion
+     */
+    public LocalPasswordPolicyEvaluator(CompiledPasswordPolicy policy, String userId, String firstName, String lastName)
+    {
+        this.policy = policy;
+        this.userId = policy.disallowUserId ? toLowerCase(userId) : null;
+        this.firstName = policy.disallowFirstName ? toLowerCase(firstName) : null;
+        this.lastName = policy.disallowLastName ? toLowerCase(lastName) : null;
+    }
+
+    /**
+     * Checks a candidate against the password policy
+     * @param pwd   Candidate password
+     * @param len   Number of characters of pwd to check
+     * @return true if the candidate conforms
+     */
+    public boolean accepts(char[] pwd, int len)
+    {
+        return violations(pwd, len) == 0;
+    }
+
+    /**
+     * Evaluates a password against the password policy
+     * @param pwd   Password
+     * @param len   Number of characters of pwd to check
+     * @return Verdict with the rules the password violates
+     */
+    public Result evaluate(char[] pwd, int len)
+    {
+        int violations = violations(pwd, len);
+        EnumSet<Rule> rules = EnumSet.noneOf(Rule.class);
+        for (Rule rule : Rule.values())
+        {
+            if ((violations & rule.bit()) != 0)
+            {
+                rules.add(rule);
+            }
+        }
+        return new Result(policy.getName(), rules);
+    }
+
+    /**
+     * @return Rules violated by the password, one bit per Rule ordinal
+     */
+    int violations(char[] pwd, int len)
+    {
+        int violations = 0;
+        int upper = 0, lower = 0, alphabets = 0, digits = 0, special = 0, unicode = 0;
+        boolean characters = true;
+
+        for (int i = 0; i < len; i++)
+        {
+            char c = pwd[i];
+            characters &= policy.permits(c);
+
+            int flags = CompiledPasswordPolicy.classOf(c);
+            upper += ((flags & CompiledPasswordPolicy.UPPER) != 0) ? 1 : 0;
+            lower += ((flags & CompiledPasswordPolicy.LOWER) != 0) ? 1 : 0;
+            alphabets += ((flags & CompiledPasswordPolicy.ALPHABET) != 0) ? 1 : 0;
+            digits += ((flags & CompiledPasswordPolicy.DIGIT) != 0) ? 1 : 0;
+            special += ((flags & CompiledPasswordPolicy.SYMBOL) != 0) ? 1 : 0;
+            unicode += ((flags & CompiledPasswordPolicy.UNICODE) != 0) ? 1 : 0;
+        }
+
+        violations |= (len < policy.minLength) ? Rule.MIN_LENGTH.bit() : 0;
+        violations |= (len > policy.maxLength) ? Rule.MAX_LENGTH.bit() : 0;
+        violations |= characters ? 0 : Rule.CHARACTERS.bit();
+        violations |= (upper < policy.minUpper) ? Rule.MIN_UPPERCASE.bit() : 0;
+        violations |= (lower < policy.minLower) ? Rule.MIN_LOWERCASE.bit() : 0;
+        violations |= (alphabets < policy.minAlphabets) ? Rule.MIN_ALPHABETS.bit() : 0;
+        violations |= (digits < policy.minNumerics) ? Rule.MIN_NUMERICS.bit() : 0;
+        violations |= (alphabets + digits < policy.minAlphaNumerics) ? Rule.MIN_ALPHANUMERICS.bit() : 0;
+        violations |= (special < policy.minSpecial) ? Rule.MIN_SPECIAL.bit() : 0;
+        violations |= (special > policy.maxSpecial) ? Rule.MAX_SPECIAL.bit() : 0;
+        violations |= (unicode < policy.minUnicode) ? Rule.MIN_UNICODE.bit() : 0;
+        violations |= (unicode > policy.maxUnicode) ? Rule.MAX_UNICODE.bit() : 0;
+        violations |= (policy.startsWithChar && (len == 0 || (CompiledPasswordPolicy.classOf(pwd[0]) & CompiledPasswordPolicy.ALPHABET) == 0)) ? Rule.STARTS_WITH_CHAR.bit() : 0;
+        violations |= contains(pwd, len, userId) ? Rule.USER_ID.bit() : 0;
+        violations |= contains(pwd, len, firstName) ? Rule.FIRST_NAME.bit() : 0;
+        violations |= contains(pwd, len, lastName) ? Rule.LAST_NAME.bit() : 0;
+
+        // Quadratic, but passwords are short and the checks are skipped unless the policy sets them
+        if (policy.maxRepeated < len || policy.minUnique > 0)
+        {
+            int maxOccurrences = 0, unique = 0;
+            for (int i = 0; i < len; i++)
+            {
+                int occurrences = 0;
+                boolean first = true;
+                for (int j = 0; j < len; j++)
+                {
+                    if (pwd[j] == pwd[i])
+                    {
+                        occurrences++;
+                        first &= j >= i;
+                    }
+                }
+                maxOccurrences = Math.max(maxOccurrences, occurrences);
+                unique += first ? 1 : 0;
+            }
+
+            violations |= (maxOccurrences > policy.maxRepeated) ? Rule.MAX_REPEATED.bit() : 0;
+            violations |= (unique < policy.minUnique) ? Rule.MIN_UNIQUE.bit() : 0;
+        }
+
+        return violations;
+    }
+
+    /**
+     * @return User attributes the policy excludes from the password, in lower case
+     */
+    String[] getExcludedValues()
+    {
+        List<String> values = new ArrayList<String>(3);
+        for (char[] value : new char[][]{userId, firstName, lastName})
+        {
+            if (value != null)
+            {
+                values.add(new String(value));
+            }
+        }
+        return values.toArray(new String[values.size()]);
+    }
+
+    /**
+     * @return true if value is present in the password [IGNORE CASE]
+     */
+    private static boolean contains(char[] pwd, int len, char[] value)
+    {
+        if (value == null)
+        {
+            return false;
+        }
+
+        for (int start = 0; start + value.length <= len; start++)
+        {
+            int i = 0;
+            while (i < value.length && Character.toLowerCase(pwd[start + i]) == value[i])
+            {
+                i++;
+            }
+
+            if (i == value.length)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Lower case characters; null if the value is null or empty
+     */
+    private static char[] toLowerCase(String value)
+    {
+        if (value == null || value.length() == 0)
+        {
+            return null;
+        }
+
+        char[] chars = value.toCharArray();
+        for (int i = 0; i < chars.length; i++)
+        {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return chars;
+    }
+
+    /**
+     * Verdict of the evaluator; the local counterpart of ValidationResult
+     */
+    public static class Result
+    {
+        private final String policyName;
+        private final EnumSet<Rule> violations;
+
+        Result(String policyName, EnumSet<Rule> violations)
+        {
+            this.policyName = policyName;
+            this.violations = violations;
+        }
+
+        public String getPolicyName()
+        {
+            return policyName;
+        }
+
+        /**
+         * @return true if the password conforms to the password policy
+         */
+        public boolean isPasswordValid()
+        {
+            return violations.isEmpty();
+        }
+
+        /**
+         * @return Rules the password violates; empty if valid
+         */
+        public EnumSet<Rule> getViolations()
+        {
+            return EnumSet.copyOf(violations);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Policy " + policyName + ": " + (violations.isEmpty() ? "valid" : "violates " + violations);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package oracle.iam.ui.custom;
+
+import java.io.Serializable;
+import java.util.Map;
+import javax.faces.context.ExternalContext;
+import javax.faces.context.FacesContext;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+import oracle.iam.identity.usermgmt.api.UserManager;
+import oracle.iam.passwordmgmt.api.PasswordMgmtService;
+import oracle.iam.ui.platform.model.common.OIMClientFactory;
+
+/**
+ * OIM Services
+ * - Session scoped holder of the OIM service handles used by the custom beans
+ * - Handles are resolved from OIMClientFactory once per session, on first use
+ * - Handles are guarded by the shared AdmissionController
+ * - Handles are transient; they are resolved again if the session is failed over
+ * - When the session ends, the reset service releases what it registered as the session's user
+ */
+public class OIMServices implements Serializable, HttpSessionBindingListener
+{
+    private static final long serialVersionUID = 1L;
+
+    // Session map key
+    private static final String SESSION_KEY = OIMServices.class.getName();
+
+    private transient volatile UserManager userManager;
+    private transient volatile PasswordMgmtService pwdMgmtService;
+    private transient volatile PasswordResetService resetService;
+    private final String actor;
+
+    private OIMServices(String actor)
+    {
+        this.actor = actor;
+    }
+
+    /**
+     * Holder of the current session; created on first use
+     * @return OIM services of the current user
+     */
+    public static OIMServices getCurrent()
+    {
+        ExternalContext externalContext = FacesContext.getCurrentInstance().getExternalContext();
+        Map<String, Object> sessionMap = externalContext.getSessionMap();
+
+        OIMServices services = (OIMServices)sessionMap.get(SESSION_KEY);
+        if (services == null)
+        {
+            synchronized (OIMServices.class)
+            {
+                services = (OIMServices)sessionMap.get(SESSION_KEY);
+                if (services == null)
+                {
+                    services = new OIMServices(externalContext.getRemoteUser());
+                    sessionMap.put(SESSION_KEY, services);
+                }
+            }
+        }
+
+        return services;
+    }
+
+    public UserManager getUserManager()
+    {
+        if (userManager == null)
+        {
+            userManager = AdmissionController.getInstance().guard(UserManager.class, OIMClientFactory.getUserManager());
+        }
+        return userManager;
+    }
+
+    public PasswordMgmtService getPasswordMgmtService()
+    {
+        if (pwdMgmtService == null)
+        {
+            pwdMgmtService = AdmissionController.getInstance().guard(PasswordMgmtService.class, OIMClientFactory.getPasswordMgmtService());
+        }
+        return pwdMgmtService;
+    }
+
+    /**
+     * @return Reset service bound to the handles of the current user
+     */
+    public PasswordResetService getPasswordResetService()
+    {
+        if (resetService == null)
+        {
+            PasswordResetService service = new PasswordResetService(getUserManager(), getPasswordMgmtService());
+            service.setActor(actor);
+            resetService = service;
+        }
+        return resetService;
+    }
+
+    public void valueBound(HttpSessionBindingEvent event)
+    {
+    }
+
+    /**
+     * Session invalidated, timed out or the holder removed
+     */
+    public void valueUnbound(HttpSessionBindingEvent event)
+    {
+        PasswordResetService service = resetService;
+        if (service != null)
+        {
+            service.close();
+        }
+    }
+
+    /**
+     * @return User Login of the session's user
+     */
+    public String getActor()
+    {
+        return actor;
+    }
+}
@@ -0,0 +1,324 @@
+package oracle.iam.ui.custom;
+
+/**
+ * Password Generator
+ * - Builds a candidate password that conforms to the OIM password policy by construction
+ * - Required character classes are placed first, the rest is filled from the
+ *   allowed characters and the result is shuffled
+ * - Also guarantees the custom rule "at least one number or symbol"
+ * - Writes into a caller supplied buffer; randomness comes from the thread's SecureRandomSource
+ */
+public class PasswordGenerator
+{
+    // Number of draws attempted before a repeat/uniqueness constraint is relaxed for a position
+    private static final int MAX_DRAWS_PER_POSITION = 64;
+
+    private final char[] upper;
+    private final char[] lower;
+    private final char[] digits;
+    private final char[] symbols;
+    private final char[] all;
+    private final char[] alphabets;
+    private final char[] alphaNumerics;
+    private final char[] numbersOrSymbols;
+
+    private final int length;
+    private final int minLength;
+    private final int maxLength;
+    private final int minUpper;
+    private final int minLower;
+    private final int minAlphabets;
+    private final int minNumerics;
+    private final int minAlphaNumerics;
+    private final int minSpecial;
+    private final int maxSpecial;
+    private final int maxRepeated;
+    private final int minUnique;
+    private final int minUnicode;
+    private final boolean startsWithChar;
+
+    /**
+     * @param policy    Password policy applicable to the target user
+     * @throws IllegalStateException    The policy cannot be satisfied with the allowed characters and length
+     */
+    public PasswordGenerator(CompiledPasswordPolicy policy)
+    {
+        this.upper = policy.upper;
+        this.lower = policy.lower;
+        this.digits = policy.digits;
+        this.symbols = policy.symbols;
+        this.alphabets = policy.alphabets;
+        this.alphaNumerics = policy.alphaNumerics;
+        this.numbersOrSymbols = policy.numbersOrSymbols;
+        this.all = policy.all;
+
+        this.length = policy.length;
+        this.minLength = policy.minLength;
+        this.maxLength = policy.maxLength;
+        this.minUpper = policy.minUpper;
+        this.minLower = policy.minLower;
+        this.minAlphabets = policy.minAlphabets;
+        this.minNumerics = policy.minNumerics;
+        this.minAlphaNumerics = policy.minAlphaNumerics;
+        this.minSpecial = policy.minSpecial;
+        this.maxSpecial = policy.maxSpecial;
+        this.maxRepeated = policy.maxRepeated;
+        this.minUnique = policy.minUnique;
+        this.minUnicode = policy.minUnicode;
+        this.startsWithChar = policy.startsWithChar;
+
+        checkSatisfiable();
+    }
+
+    /**
+     * Generates a candidate password
+     * - Required counts of each character class are placed first
+     * - Remaining positions are filled from the allowed characters, honoring max special and max repeated
+     * - Positions are shuffled; an alphabet is moved to the front if the policy requires it
+     * @param pwd   Buffer of at least getLength() characters; receives the candidate password
+     */
+    public void generate(char[] pwd)
+    {
+        SecureRandomSource random = SecureRandomSource.current();
+        int pos = 0;
+
+        // Required character classes
+        int requiredUpper = Math.max(minUpper, 0);
+        int requiredLower = Math.max(minLower, 0);
+        int requiredAlphabets = Math.max(minAlphabets - requiredUpper - requiredLower, 0);
+        if (startsWithChar && requiredUpper + requiredLower + requiredAlphabets == 0)
+        {
+            requiredAlphabets = 1; // The fill may not draw one to move to the front
+        }
+        int requiredDigits = minNumerics;
+        int requiredSpecial = minSpecial;
+
+        // Custom rule: at least one number or symbol
+        int requiredNumberOrSymbol = (requiredDigits + requiredSpecial) > 0 ? 0 : 1;
+        int requiredAlphaNumerics = Math.max(minAlphaNumerics - requiredUpper - requiredLower - requiredAlphabets - requiredDigits, 0);
+
+        pos = place(random, pwd, pos, upper, requiredUpper);
+        pos = place(random, pwd, pos, lower, requiredLower);
+        pos = place(random, pwd, pos, alphabets, requiredAlphabets);
+        pos = place(random, pwd, pos, digits, requiredDigits);
+        pos = place(random, pwd, pos, symbols, requiredSpecial);
+        pos = place(random, pwd, pos, (requiredSpecial < maxSpecial) ? numbersOrSymbols : digits, requiredNumberOrSymbol);
+        pos = place(random, pwd, pos, alphaNumerics, requiredAlphaNumerics);
+
+        // Fill the remaining positions
+        int specialCount = countSymbols(pwd, pos);
+        while (pos < length)
+        {
+            char[] pool = (specialCount < maxSpecial) ? all : alphaNumerics;
+            char ch = draw(random, pwd, pos, pool);
+            if (isSymbol(ch))
+            {
+                specialCount++;
+            }
+            pwd[pos++] = ch;
+        }
+
+        shuffle(random, pwd);
+
+        if (startsWithChar && !isAlphabet(pwd[0]))
+        {
+            for (int i = 1; i < length; i++)
+            {
+                if (isAlphabet(pwd[i]))
+                {
+                    char tmp = pwd[0];
+                    pwd[0] = pwd[i];
+                    pwd[i] = tmp;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return New buffer for generate(char[])
+     */
+    public char[] newBuffer()
+    {
+        return new char[length];
+    }
+
+    /**
+     * Places count characters drawn from pool starting at pos
+     * @return Next free position
+     */
+    private int place(SecureRandomSource random, char[] pwd, int pos, char[] pool, int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            pwd[pos] = draw(random, pwd, pos, pool);
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Draws a character from pool honoring max repeated and min unique;
+     * constraints are relaxed after a bounded number of draws
+     */
+    private char draw(SecureRandomSource random, char[] pwd, int pos, char[] pool)
+    {
+        boolean needUnique = minUnique > 0 && (minUnique - distinct(pwd, pos)) >= (length - pos);
+        char ch = pool[random.nextInt(pool.length)];
+
+        for (int i = 0; i < MAX_DRAWS_PER_POSITION; i++)
+        {
+            int occurrences = occurrences(pwd, pos, ch);
+            if (occurrences < maxRepeated && (!needUnique || occurrences == 0))
+            {
+                break;
+            }
+            ch = pool[random.nextInt(pool.length)];
+        }
+
+        return ch;
+    }
+
+    private void shuffle(SecureRandomSource random, char[] pwd)
+    {
+        for (int i = length - 1; i > 0; i--)
+        {
+            int j = random.nextInt(i + 1);
+            char tmp = pwd[i];
+            pwd[i] = pwd[j];
+            pwd[j] = tmp;
+        }
+    }
+
+    /**
+     * Fail fast on policies that can never be satisfied by construction
+     */
+    private void checkSatisfiable()
+    {
+        int required = Math.max(minUpper + minLower, minAlphabets) + minNumerics + minSpecial;
+        required = Math.max(required, minAlphaNumerics + minSpecial);
+        required += (minNumerics + minSpecial > 0) ? 0 : 1; // At least one number or symbol
+        required += (startsWithChar && Math.max(minUpper + minLower, minAlphabets) == 0 && minAlphaNumerics <= minNumerics) ? 1 : 0; // A leading alphabet
+
+        if (all.length == 0)
+        {
+            throw new IllegalStateException("Password policy does not allow any character that can be used to generate a password");
+        }
+
+        if (minLength > maxLength)
+        {
+            throw new IllegalStateException("Password policy minimum length " + minLength + " exceeds its maximum length " + maxLength);
+        }
+
+        if (required > length)
+        {
+            throw new IllegalStateException("Password policy requires " + required + " characters but the generated password length is " + length);
+        }
+
+        if ((minUpper > 0 && upper.length == 0) || (minLower > 0 && lower.length == 0)
+            || (minAlphabets > 0 && alphabets.length == 0) || (minNumerics > 0 && digits.length == 0)
+            || (minSpecial > 0 && symbols.length == 0) || (minAlphaNumerics > 0 && alphaNumerics.length == 0)
+            || (startsWithChar && alphabets.length == 0))
+        {
+            throw new IllegalStateException("Password policy requires a character class that is not in the allowed characters");
+        }
+
+        if (numbersOrSymbols.length == 0)
+        {
+            throw new IllegalStateException("Custom password policy requires a number or symbol but the password policy allows neither");
+        }
+
+        if (minSpecial > maxSpecial || (maxSpecial == 0 && digits.length == 0) || (maxSpecial < length && alphaNumerics.length == 0))
+        {
+            throw new IllegalStateException("Password policy special character limits cannot be satisfied");
+        }
+
+        if (minUnique > length)
+        {
+            throw new IllegalStateException("Password policy requires " + minUnique + " unique characters but the generated password length is " + length);
+        }
+
+        // Symbols beyond max special cannot be used, so they do not add distinct characters
+        long distinct = alphaNumerics.length + Math.min(symbols.length, maxSpecial);
+        if (minUnique > distinct)
+        {
+            throw new IllegalStateException("Password policy requires " + minUnique + " unique characters but allows only " + distinct + " distinct characters");
+        }
+
+        long capacity = capacity(alphaNumerics) + Math.min(capacity(symbols), maxSpecial);
+        if (capacity < length)
+        {
+            throw new IllegalStateException("Password policy allows each character at most " + maxRepeated + " times, which fills only "
+                                            + capacity + " of the " + length + " characters of the generated password");
+        }
+
+        if (capacity(upper) < minUpper || capacity(lower) < minLower || capacity(alphabets) < minAlphabets || capacity(digits) < minNumerics
+            || capacity(symbols) < minSpecial || capacity(alphaNumerics) < minAlphaNumerics)
+        {
+            throw new IllegalStateException("Password policy allows each character at most " + maxRepeated
+                                            + " times, which is too few for the required characters of a class");
+        }
+
+        if (minUnicode > 0)
+        {
+            throw new IllegalStateException("Password policy requires " + minUnicode + " unicode characters but generated passwords are not guaranteed to contain any");
+        }
+    }
+
+    /**
+     * @return Characters of pool that fit in a password when each may be used at most maxRepeated times
+     */
+    private long capacity(char[] pool)
+    {
+        return (long)pool.length * maxRepeated;
+    }
+
+    private static boolean isAlphabet(char c)
+    {
+        return (CompiledPasswordPolicy.classOf(c) & CompiledPasswordPolicy.ALPHABET) != 0;
+    }
+
+    private static boolean isSymbol(char c)
+    {
+        return (CompiledPasswordPolicy.classOf(c) & CompiledPasswordPolicy.SYMBOL) != 0;
+    }
+
+    private static int occurrences(char[] pwd, int len, char ch)
+    {
+        int count = 0;
+        for (int i = 0; i < len; i++)
+        {
+            if (pwd[i] == ch)
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int distinct(char[] pwd, int len)
+    {
+        int count = 0;
+        for (int i = 0; i < len; i++)
+        {
+            if (occurrences(pwd, i, pwd[i]) == 0)
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int countSymbols(char[] pwd, int len)
+    {
+        int count = 0;
+        for (int i = 0; i < len; i++)
+        {
+            if (isSymbol(pwd[i]))
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,203 @@
+package oracle.iam.ui.custom;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import oracle.core.ojdl.logging.ODLLevel;
+import oracle.core.ojdl.logging.ODLLogger;
+import oracle.iam.passwordmgmt.vo.PasswordPolicyInfo;
+
+/**
+ * Password Policy Cache
+ * - Compiled password policies keyed by policy name
+ * - Organization to policy name index so the policy probe is only made once per organization
+ * - Bounded (least recently used entries are evicted) with a time to live
+ * - Shared by all sessions on the managed server
+ */
+public class PasswordPolicyCache
+{
+    // Logger
+    private static final ODLLogger logger = ODLLogger.getODLLogger(PasswordPolicyCache.class.getName());
+
+    private static final int DEFAULT_MAX_ENTRIES = 64;
+    private static final long DEFAULT_TTL_MILLIS = 15L * 60L * 1000L; // 15 minutes
+
+    private static final PasswordPolicyCache INSTANCE = new PasswordPolicyCache(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+
+    private final long ttlMillis;
+    private final Map<String, CacheEntry<CompiledPasswordPolicy>> policies;
+    private final Map<String, CacheEntry<String>> organizations;
+
+    /**
+     * @param maxEntries    Maximum number of policies and of organizations to keep
+     * @param ttlMillis     Time to live of an entry in milliseconds
+     */
+    PasswordPolicyCache(int maxEntries, long ttlMillis)
+    {
+        this.ttlMillis = ttlMillis;
+        this.policies = new BoundedMap<CompiledPasswordPolicy>(maxEntries);
+        this.organizations = new BoundedMap<String>(maxEntries);
+    }
+
+    /**
+     * Cache shared by all beans
+     * @return Password policy cache
+     */
+    public static PasswordPolicyCache getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the compiled password policy applicable to an organization
+     * @param orgKey    OIM.Organization Key (ACT_KEY)
+     * @return Compiled policy; null if not cached or expired
+     */
+    public synchronized CompiledPasswordPolicy getForOrganization(String orgKey)
+    {
+        CacheEntry<String> policyName = organizations.get(orgKey);
+        if (policyName == null || isExpired(policyName))
+        {
+            organizations.remove(orgKey);
+            return null;
+        }
+
+        return get(policyName.value);
+    }
+
+    /**
+     * Get a compiled password policy
+     * @param policyName    Password policy name
+     * @return Compiled policy; null if not cached or expired
+     */
+    public synchronized CompiledPasswordPolicy get(String policyName)
+    {
+        CacheEntry<CompiledPasswordPolicy> policy = policies.get(policyName);
+        if (policy == null || isExpired(policy))
+        {
+            policies.remove(policyName);
+            return null;
+        }
+
+        return policy.value;
+    }
+
+    /**
+     * Compile and cache the password policy applicable to an organization.
+     * The policy is only compiled into the cache if no policy with the same name and rules is cached.
+     * @param orgKey    OIM.Organization Key (ACT_KEY)
+     * @param policyInfo    Password policy returned by OIM
+     * @return Compiled policy
+     */
+    public CompiledPasswordPolicy put(String orgKey, PasswordPolicyInfo policyInfo)
+    {
+        return put(orgKey, new CompiledPasswordPolicy(policyInfo));
+    }
+
+    /**
+     * Cache the password policy applicable to an organization; replaces a cached policy of the same name whose rules differ
+     * @param orgKey    OIM.Organization Key (ACT_KEY)
+     * @param policy    Compiled password policy
+     * @return Cached policy; the one already cached if it has the same rules
+     */
+    public CompiledPasswordPolicy put(String orgKey, CompiledPasswordPolicy policy)
+    {
+        synchronized (this)
+        {
+            organizations.put(orgKey, new CacheEntry<String>(policy.getName()));
+
+            CompiledPasswordPolicy cached = get(policy.getName());
+            if (cached != null && cached.hasSameRules(policy))
+            {
+                return cached;
+            }
+
+            policies.put(policy.getName(), new CacheEntry<CompiledPasswordPolicy>(policy));
+            logger.log(ODLLevel.NOTIFICATION, (cached == null) ? "Compiled password policy: {0}" : "Recompiled changed password policy: {0}", new Object[]{policy});
+        }
+
+        // Report a policy no password can satisfy once, when it is compiled, rather than on every reset
+        PolicyFeasibilityAnalyzer.Result feasibility = PolicyFeasibilityAnalyzer.analyze(policy, null);
+        if (!feasibility.isFeasible())
+        {
+            logger.log(ODLLevel.SEVERE, "Password policy {0} cannot be satisfied: {1}", new Object[]{policy.getName(), feasibility.getDiagnostic()});
+        }
+        return policy;
+    }
+
+    /**
+     * Remove a policy; organizations mapped to it are resolved again on next use
+     * @param policyName    Password policy name
+     */
+    public synchronized void invalidate(String policyName)
+    {
+        policies.remove(policyName);
+        for (Iterator<CacheEntry<String>> it = organizations.values().iterator(); it.hasNext();)
+        {
+            if (it.next().value.equals(policyName))
+            {
+                it.remove();
+            }
+        }
+        logger.log(ODLLevel.NOTIFICATION, "Invalidated password policy: {0}", new Object[]{policyName});
+    }
+
+    /**
+     * Remove all policies
+     */
+    public synchronized void invalidateAll()
+    {
+        policies.clear();
+        organizations.clear();
+        logger.log(ODLLevel.NOTIFICATION, "Invalidated all password policies");
+    }
+
+    /**
+     * @return Number of cached policies
+     */
+    public synchronized int size()
+    {
+        return policies.size();
+    }
+
+    private boolean isExpired(CacheEntry<?> entry)
+    {
+        return System.currentTimeMillis() - entry.loadedAt > ttlMillis;
+    }
+
+    /**
+     * Cached value with the time it was loaded
+     */
+    private static class CacheEntry<V>
+    {
+        final V value;
+        final long loadedAt = System.currentTimeMillis();
+
+        CacheEntry(V value)
+        {
+            this.value = value;
+        }
+    }
+
+    /**
+     * Access ordered map that evicts the least recently used entry once full
+     */
+    private static class BoundedMap<V> extends LinkedHashMap<String, CacheEntry<V>>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        BoundedMap(int maxEntries)
+        {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CacheEntry<V>> eldest)
+        {
+            return size() > maxEntries;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package oracle.iam.ui.custom;
+
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.security.auth.Subject;
+import oracle.core.ojdl.logging.ODLLevel;
+import oracle.core.ojdl.logging.ODLLogger;
+import oracle.iam.passwordmgmt.api.PasswordMgmtService;
+import oracle.iam.passwordmgmt.vo.ValidationResult;
+import weblogic.security.Security;
+
+/**
+ * Password Pool
+ * - Optional; disabled until configured with a pool size greater than 0
+ * - Keeps a few generated passwords per password policy that OIM already validated
+ * - Refilled by a low priority background thread, as the last user that reset a password with the policy,
+ *   only while that user's session lasts; when it ends, its handle, subject and pooled passwords are dropped
+ * - A pooled password is handed out once; expired, evicted and stale passwords are wiped
+ * - An empty pool is not an error; the caller generates a password on demand
+ */
+public class PasswordPool
+{
+    // Logger
+    private static final ODLLogger logger = ODLLogger.getODLLogger(PasswordPool.class.getName());
+
+    private static final long REFILL_INTERVAL_MILLIS = 1000L;
+    private static final int MAX_REFILL_ATTEMPTS = 3; // Per missing password and refill round
+    private static final int MAX_POOLS = 32;
+
+    private static final PasswordPool INSTANCE = new PasswordPool();
+
+    private final ConcurrentHashMap<String, Pool> pools = new ConcurrentHashMap<String, Pool>();
+    private volatile int size;
+    private volatile long maxAgeMillis;
+    private ScheduledExecutorService refiller; // Guarded by this
+
+    PasswordPool()
+    {
+    }
+
+    /**
+     * Pool shared by all beans
+     * @return Password pool
+     */
+    public static PasswordPool getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Enables or disables the pool
+     * @param size              Passwords to keep per policy; 0 disables the pool
+     * @param maxAgeMillis      Pooled passwords older than this are wiped
+     */
+    public synchronized void configure(int size, long maxAgeMillis)
+    {
+        this.size = size;
+        this.maxAgeMillis = maxAgeMillis;
+
+        if (size > 0 && refiller == null)
+        {
+            refiller = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+            {
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "CustomPasswordPool");
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                }
+            });
+            refiller.scheduleWithFixedDelay(new Runnable()
+            {
+                public void run()
+                {
+                    refill();
+                }
+            }, REFILL_INTERVAL_MILLIS, REFILL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            logger.log(ODLLevel.NOTIFICATION, "Password pool enabled with {0} passwords per policy", new Object[]{size});
+        }
+
+        else if (size <= 0)
+        {
+            shutdown();
+        }
+    }
+
+    public boolean isEnabled()
+    {
+        return size > 0;
+    }
+
+    /**
+     * Registers a policy to keep passwords for, or refreshes the handle and user used to validate them
+     * @param owner             Registers on behalf of the current user until unregister(owner) is called
+     * @param policy            Compiled password policy
+     * @param pwdMgmtService    OIM password service of the current user
+     * @param userKey           OIM.User Key (USR_KEY) of a user the policy applies to
+     */
+    public void register(Object owner, CompiledPasswordPolicy policy, PasswordMgmtService pwdMgmtService, String userKey)
+    {
+        if (!isEnabled())
+        {
+            return;
+        }
+
+        Pool pool = pools.get(policy.getName());
+        if (pool == null)
+        {
+            if (pools.size() >= MAX_POOLS)
+            {
+                return;
+            }
+
+            pools.putIfAbsent(policy.getName(), new Pool());
+            pool = pools.get(policy.getName());
+        }
+
+        pool.register(owner, policy, pwdMgmtService, userKey, Security.getCurrentSubject());
+    }
+
+    /**
+     * Drops the handle and subject registered by owner, and wipes the passwords of the pools it last registered;
+     * the pools are not refilled until another user registers them
+     * @param owner     Owner given to register
+     */
+    public void unregister(Object owner)
+    {
+        for (Pool pool : pools.values())
+        {
+            pool.unregister(owner);
+        }
+    }
+
+    /**
+     * Takes a pooled password that also satisfies the custom rules and user attribute exclusions of the target user
+     * @param policy        Compiled password policy of the target user
+     * @param rules         Custom password rules of the target user
+     * @param evaluator     Password policy evaluator of the target user
+     * @return Validated password; caller must wipe it after use. Null if none is pooled
+     */
+    public char[] take(CompiledPasswordPolicy policy, CustomPasswordRules rules, LocalPasswordPolicyEvaluator evaluator)
+    {
+        Pool pool = pools.get(policy.getName());
+        return (pool == null) ? null : pool.take(policy, rules, evaluator, maxAgeMillis);
+    }
+
+    /**
+     * @return Number of pooled passwords of all policies
+     */
+    public int size()
+    {
+        int total = 0;
+        for (Pool pool : pools.values())
+        {
+            total += pool.size();
+        }
+        return total;
+    }
+
+    /**
+     * Stops refilling and wipes every pooled password
+     */
+    public synchronized void shutdown()
+    {
+        size = 0;
+        if (refiller != null)
+        {
+            refiller.shutdownNow();
+            refiller = null;
+        }
+
+        for (Pool pool : pools.values())
+        {
+            pool.clear();
+        }
+        pools.clear();
+    }
+
+    private void refill()
+    {
+        for (Pool pool : pools.values())
+        {
+            try
+            {
+                pool.refill(size, maxAgeMillis);
+            }
+
+            catch (AdmissionRejectedException e)
+            {
+                // OIM calls are saturated; resets come first, try again next round
+                logger.log(ODLLevel.TRACE, "Password pool refill deferred: {0}", new Object[]{e.getMessage()});
+                return;
+            }
+
+            catch (Exception e)
+            {
+                logger.log(ODLLevel.WARNING, "Unable to refill password pool", e);
+            }
+        }
+    }
+
+    /**
+     * Passwords of one policy with what is needed to validate new ones
+     */
+    private static class Pool
+    {
+        private final ArrayDeque<PooledPassword> passwords = new ArrayDeque<PooledPassword>(); // Guarded by this
+        private CompiledPasswordPolicy policy; // Guarded by this
+        private Object owner; // Guarded by this; null once the owner is unregistered
+        private PasswordMgmtService pwdMgmtService; // Guarded by this
+        private String userKey; // Guarded by this
+        private Subject subject; // Guarded by this
+
+        synchronized void register(Object owner, CompiledPasswordPolicy policy, PasswordMgmtService pwdMgmtService, String userKey, Subject subject)
+        {
+            // A recompiled policy may differ; passwords made for the previous one are stale
+            if (this.policy != policy)
+            {
+                clear();
+                this.policy = policy;
+            }
+            this.owner = owner;
+            this.pwdMgmtService = pwdMgmtService;
+            this.userKey = userKey;
+            this.subject = subject;
+        }
+
+        synchronized void unregister(Object owner)
+        {
+            if (this.owner == owner)
+            {
+                clear();
+                this.owner = null;
+                this.pwdMgmtService = null;
+                this.userKey = null;
+                this.subject = null;
+            }
+        }
+
+        synchronized char[] take(CompiledPasswordPolicy policy, CustomPasswordRules rules, LocalPasswordPolicyEvaluator evaluator, long maxAgeMillis)
+        {
+            if (this.policy != policy)
+            {
+                return null;
+            }
+
+            // Passwords the rules reject for this user may suit another user; keep them
+            long now = System.currentTimeMillis();
+            for (int i = passwords.size(); i > 0; i--)
+            {
+                PooledPassword pooled = passwords.pollFirst();
+                if (now - pooled.createdAt > maxAgeMillis)
+                {
+                    SecureRandomSource.wipe(pooled.password);
+                }
+
+                else if (rules.accepts(pooled.password, pooled.password.length) && evaluator.accepts(pooled.password, pooled.password.length))
+                {
+                    return pooled.password;
+                }
+
+                else
+                {
+                    passwords.addLast(pooled);
+                }
+            }
+
+            return null;
+        }
+
+        void refill(int size, long maxAgeMillis) throws Exception
+        {
+            final CompiledPasswordPolicy policy;
+            final Object owner;
+            final PasswordMgmtService pwdMgmtService;
+            final String userKey;
+            Subject subject;
+            int missing;
+
+            synchronized (this)
+            {
+                long now = System.currentTimeMillis();
+                while (!passwords.isEmpty() && now - passwords.peekFirst().createdAt > maxAgeMillis)
+                {
+                    SecureRandomSource.wipe(passwords.pollFirst().password);
+                }
+
+                policy = this.policy;
+                owner = this.owner;
+                pwdMgmtService = this.pwdMgmtService;
+                userKey = this.userKey;
+                subject = this.subject;
+                missing = size - passwords.size();
+            }
+
+            if (policy == null || owner == null || missing <= 0)
+            {
+                return;
+            }
+
+            // User attribute exclusions depend on the target user and are checked when a password is taken
+            PasswordGenerator generator = new PasswordGenerator(policy);
+            LocalPasswordPolicyEvaluator evaluator = new LocalPasswordPolicyEvaluator(policy, null, null, null);
+            for (int attempt = 0; attempt < missing * MAX_REFILL_ATTEMPTS && missing > 0; attempt++)
+            {
+                final char[] candidate = generator.newBuffer();
+                generator.generate(candidate);
+                if (!evaluator.accepts(candidate, candidate.length))
+                {
+                    SecureRandomSource.wipe(candidate);
+                    continue;
+                }
+
+                ValidationResult vr;
+                try
+                {
+                    vr = (ValidationResult)Security.runAs(subject, new PrivilegedExceptionAction<ValidationResult>()
+                    {
+                        public ValidationResult run() throws Exception
+                        {
+                            return pwdMgmtService.validatePasswordAgainstPolicy(candidate, userKey, Locale.getDefault(), false);
+                        }
+                    });
+                }
+
+                catch (PrivilegedActionException e)
+                {
+                    SecureRandomSource.wipe(candidate);
+                    throw e.getException();
+                }
+
+                catch (RuntimeException e)
+                {
+                    SecureRandomSource.wipe(candidate);
+                    throw e;
+                }
+
+                if (!vr.isPasswordValid() || !add(policy, owner, candidate, size))
+                {
+                    SecureRandomSource.wipe(candidate);
+                    continue;
+                }
+                missing--;
+            }
+        }
+
+        /**
+         * @return false if the policy or owner changed or the pool filled up meanwhile
+         */
+        private synchronized boolean add(CompiledPasswordPolicy policy, Object owner, char[] password, int size)
+        {
+            if (this.policy != policy || this.owner != owner || passwords.size() >= size)
+            {
+                return false;
+            }
+
+            passwords.addLast(new PooledPassword(password));
+            return true;
+        }
+
+        synchronized int size()
+        {
+            return passwords.size();
+        }
+
+        synchronized void clear()
+        {
+            for (PooledPassword pooled : passwords)
+            {
+                SecureRandomSource.wipe(pooled.password);
+            }
+            passwords.clear();
+        }
+    }
+
+    /**
+     * Validated password with the time it was generated
+     */
+    private static class PooledPassword
+    {
+        final char[] password;
+        final long createdAt = System.currentTimeMillis();
+
+        PooledPassword(char[] password)
+        {
+            this.password = password;
+        }
+    }
+}
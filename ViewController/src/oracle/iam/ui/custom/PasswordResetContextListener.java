@@ -0,0 +1,285 @@
+package oracle.iam.ui.custom;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import javax.management.JMException;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import oracle.core.ojdl.logging.ODLLevel;
+import oracle.core.ojdl.logging.ODLLogger;
+
+/**
+ * Password Reset Context Listener
+ * - Registered by META-INF/customPasswordReset.tld in the ADF library, as the library cannot add to the web.xml of the host application
+ * - Settings are read from a system property, then a context-param of the host application, then customPasswordReset.properties
+ * - Publishes the password reset metrics and admission control MBeans when the application is deployed
+ * - Enables the password pool if customPasswordReset.poolSize is set
+ * - Applies the OIM call limits of the customPasswordReset.*Calls, maxCallWaitMillis and callRateLimits parameters
+ * - Applies the reset stage timeouts of customPasswordReset.stageTimeouts
+ * - Starts the warm-up of the generation path unless customPasswordReset.warmUpIterations is 0
+ * - Stops the background password reset workers, stage pool and audit writer when the application is undeployed
+ */
+public class PasswordResetContextListener implements ServletContextListener
+{
+    // Logger
+    private static final ODLLogger logger = ODLLogger.getODLLogger(PasswordResetContextListener.class.getName());
+
+    // Context parameters
+    private static final String POOL_SIZE = "customPasswordReset.poolSize";
+    private static final String POOL_MAX_AGE_SECONDS = "customPasswordReset.poolMaxAgeSeconds";
+    private static final long DEFAULT_POOL_MAX_AGE_SECONDS = 600L;
+    private static final String MAX_CONCURRENT_CALLS = "customPasswordReset.maxConcurrentCalls";
+    private static final String MAX_QUEUED_CALLS = "customPasswordReset.maxQueuedCalls";
+    private static final String MAX_CALL_WAIT_MILLIS = "customPasswordReset.maxCallWaitMillis";
+    private static final String CALL_RATE_LIMITS = "customPasswordReset.callRateLimits"; // operation=calls per second, comma separated
+    private static final String STAGE_TIMEOUTS = "customPasswordReset.stageTimeouts"; // stage=milliseconds, comma separated
+    private static final String WARM_UP_ITERATIONS = "customPasswordReset.warmUpIterations";
+
+    private static final String DEFAULTS = "customPasswordReset.properties";
+    private static final String STARTED = PasswordResetContextListener.class.getName() + ".started"; // Servlet context attribute
+
+    private ResetWarmUp warmUp;
+
+    public void contextInitialized(ServletContextEvent sce)
+    {
+        ServletContext context = sce.getServletContext();
+        if (context.getAttribute(STARTED) != null)
+        {
+            logger.log(ODLLevel.WARNING, "Password reset listener is registered more than once; ignoring the duplicate");
+            return;
+        }
+        context.setAttribute(STARTED, this);
+
+        Properties defaults = loadDefaults();
+
+        try
+        {
+            ResetMetrics.getInstance().register();
+            logger.log(ODLLevel.NOTIFICATION, "Registered {0}", new Object[]{ResetMetrics.OBJECT_NAME});
+        }
+
+        catch (JMException e)
+        {
+            logger.log(ODLLevel.WARNING, "Unable to register password reset metrics", e);
+        }
+
+        AdmissionController admission = AdmissionController.getInstance();
+        try
+        {
+            String maxConcurrent = setting(context, defaults, MAX_CONCURRENT_CALLS);
+            String maxQueued = setting(context, defaults, MAX_QUEUED_CALLS);
+            String maxWait = setting(context, defaults, MAX_CALL_WAIT_MILLIS);
+            String rateLimits = setting(context, defaults, CALL_RATE_LIMITS);
+
+            if (maxConcurrent != null)
+            {
+                admission.setMaxConcurrent(Integer.parseInt(maxConcurrent.trim()));
+            }
+
+            if (maxQueued != null)
+            {
+                admission.setMaxQueued(Integer.parseInt(maxQueued.trim()));
+            }
+
+            if (maxWait != null)
+            {
+                admission.setMaxWaitMillis(Long.parseLong(maxWait.trim()));
+            }
+
+            if (rateLimits != null)
+            {
+                for (String limit : rateLimits.split(","))
+                {
+                    String[] operationAndRate = limit.split("=");
+                    if (operationAndRate.length == 2)
+                    {
+                        admission.setRateLimit(operationAndRate[0].trim(), Double.parseDouble(operationAndRate[1].trim()));
+                    }
+                }
+            }
+        }
+
+        catch (NumberFormatException e)
+        {
+            logger.log(ODLLevel.WARNING, "Invalid OIM call limit configuration; remaining limits left at their defaults", e);
+        }
+
+        try
+        {
+            admission.register();
+            logger.log(ODLLevel.NOTIFICATION, "Registered {0} with {1} concurrent calls, {2} queued calls, {3} ms wait and rate limits {4}",
+                       new Object[]{AdmissionController.OBJECT_NAME, admission.getMaxConcurrent(), admission.getMaxQueued(),
+                                    admission.getMaxWaitMillis(), admission.getRateLimits()});
+        }
+
+        catch (JMException e)
+        {
+            logger.log(ODLLevel.WARNING, "Unable to register admission control", e);
+        }
+
+        ResetPipeline pipeline = ResetPipeline.getInstance();
+        try
+        {
+            String stageTimeouts = setting(context, defaults, STAGE_TIMEOUTS);
+            if (stageTimeouts != null)
+            {
+                for (String timeout : stageTimeouts.split(","))
+                {
+                    String[] stageAndMillis = timeout.split("=");
+                    ResetPipeline.Stage stage = (stageAndMillis.length == 2) ? ResetPipeline.Stage.forDisplayName(stageAndMillis[0].trim()) : null;
+                    if (stage != null)
+                    {
+                        pipeline.setTimeoutMillis(stage, Long.parseLong(stageAndMillis[1].trim()));
+                    }
+
+                    else if (timeout.trim().length() > 0)
+                    {
+                        logger.log(ODLLevel.WARNING, "Unknown reset stage timeout {0} ignored", new Object[]{timeout.trim()});
+                    }
+                }
+            }
+
+            StringBuilder timeouts = new StringBuilder();
+            for (ResetPipeline.Stage stage : ResetPipeline.Stage.values())
+            {
+                timeouts.append(timeouts.length() == 0 ? "" : ", ").append(stage.getDisplayName()).append('=').append(pipeline.getTimeoutMillis(stage));
+            }
+            logger.log(ODLLevel.NOTIFICATION, "Reset stage timeouts in ms (0 for none): {0}", new Object[]{timeouts});
+        }
+
+        catch (IllegalArgumentException e)
+        {
+            logger.log(ODLLevel.WARNING, "Invalid reset stage timeout configuration; remaining timeouts left at their defaults", e);
+        }
+
+        try
+        {
+            String iterations = setting(context, defaults, WARM_UP_ITERATIONS);
+            int warmUpIterations = (iterations == null) ? ResetWarmUp.DEFAULT_ITERATIONS : Integer.parseInt(iterations.trim());
+            if (warmUpIterations > 0)
+            {
+                warmUp = new ResetWarmUp(warmUpIterations);
+                Thread thread = new Thread(warmUp, "CustomPasswordResetWarmUp");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.start();
+            }
+        }
+
+        catch (NumberFormatException e)
+        {
+            logger.log(ODLLevel.WARNING, "Invalid warm-up configuration; warm-up skipped", e);
+        }
+
+        try
+        {
+            String poolSize = setting(context, defaults, POOL_SIZE);
+            String poolMaxAge = setting(context, defaults, POOL_MAX_AGE_SECONDS);
+            if (poolSize != null && Integer.parseInt(poolSize.trim()) > 0)
+            {
+                long maxAgeSeconds = (poolMaxAge == null) ? DEFAULT_POOL_MAX_AGE_SECONDS : Long.parseLong(poolMaxAge.trim());
+                PasswordPool.getInstance().configure(Integer.parseInt(poolSize.trim()), maxAgeSeconds * 1000L);
+            }
+        }
+
+        catch (NumberFormatException e)
+        {
+            logger.log(ODLLevel.WARNING, "Invalid password pool configuration; password pool disabled", e);
+        }
+    }
+
+    public void contextDestroyed(ServletContextEvent sce)
+    {
+        if (sce.getServletContext().getAttribute(STARTED) != this)
+        {
+            return;
+        }
+
+        if (warmUp != null)
+        {
+            warmUp.stop();
+        }
+
+        PasswordResetExecutor.getInstance().shutdown();
+        ResetPipeline.getInstance().shutdown();
+        logger.log(ODLLevel.NOTIFICATION, "Stopped password reset executor");
+
+        PasswordPool.getInstance().shutdown();
+        ResetAuditLog.getInstance().shutdown();
+
+        try
+        {
+            ResetMetrics.getInstance().unregister();
+        }
+
+        catch (JMException e)
+        {
+            logger.log(ODLLevel.WARNING, "Unable to unregister password reset metrics", e);
+        }
+
+        try
+        {
+            AdmissionController.getInstance().unregister();
+        }
+
+        catch (JMException e)
+        {
+            logger.log(ODLLevel.WARNING, "Unable to unregister admission control", e);
+        }
+    }
+
+    /**
+     * @return Setting, or null if it is not set anywhere or set empty
+     */
+    private static String setting(ServletContext context, Properties defaults, String name)
+    {
+        String value = System.getProperty(name);
+        if (value == null)
+        {
+            value = context.getInitParameter(name);
+        }
+
+        if (value == null)
+        {
+            value = defaults.getProperty(name);
+        }
+        return (value == null || value.trim().length() == 0) ? null : value;
+    }
+
+    private static Properties loadDefaults()
+    {
+        Properties defaults = new Properties();
+        InputStream in = PasswordResetContextListener.class.getResourceAsStream(DEFAULTS);
+        if (in == null)
+        {
+            logger.log(ODLLevel.WARNING, "{0} not found; built-in defaults apply", new Object[]{DEFAULTS});
+            return defaults;
+        }
+
+        try
+        {
+            defaults.load(in);
+        }
+
+        catch (IOException e)
+        {
+            logger.log(ODLLevel.WARNING, "Unable to read " + DEFAULTS + "; built-in defaults apply", e);
+        }
+
+        finally
+        {
+            try
+            {
+                in.close();
+            }
+
+            catch (IOException e)
+            {
+                // Nothing was written
+            }
+        }
+        return defaults;
+    }
+}
@@ -0,0 +1,468 @@
+package oracle.iam.ui.custom;
+
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.security.auth.Subject;
+import oracle.core.ojdl.logging.ODLLevel;
+import oracle.core.ojdl.logging.ODLLogger;
+import oracle.iam.identity.usermgmt.vo.User;
+import weblogic.security.Security;
+
+/**
+ * Password Reset Executor
+ * - Runs password resets off the JSF request thread on a bounded pool shared by all sessions
+ * - Resets run as the subject of the user that submitted them
+ * - Submissions are rejected once all workers are busy and the queue is full
+ * - Concurrent submissions for the same user by the same helpdesk user join the reset in progress and share its result;
+ *   a reset started by another helpdesk user is never joined, as OIM did not check the joiner's rights to it
+ * - Each submission is identified by a ticket, so callers keep only the ticket in the session
+ * - Results nobody takes are wiped once they are older than the uncollected timeout
+ * - A joined submission is audited when its reader takes the shared result
+ */
+public class PasswordResetExecutor
+{
+    // Logger
+    private static final ODLLogger logger = ODLLogger.getODLLogger(PasswordResetExecutor.class.getName());
+
+    static final int THREADS = 8;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final long UNCOLLECTED_TIMEOUT_MILLIS = 5L * 60L * 1000L; // Completed results are wiped after 5 minutes
+    private static final long SWEEP_INTERVAL_MILLIS = 30L * 1000L;
+
+    private static final PasswordResetExecutor INSTANCE = new PasswordResetExecutor(THREADS, QUEUE_CAPACITY);
+
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentHashMap<String, Flight> inFlight = new ConcurrentHashMap<String, Flight>();
+    private final ConcurrentHashMap<String, ResetTask> tasks = new ConcurrentHashMap<String, ResetTask>(); // By ticket, until taken or wiped
+    private final ScheduledExecutorService sweeper;
+    private final long uncollectedTimeoutMillis;
+
+    /**
+     * @param threads           Number of worker threads
+     * @param queueCapacity     Number of resets that may wait for a worker
+     */
+    PasswordResetExecutor(int threads, int queueCapacity)
+    {
+        this(threads, queueCapacity, UNCOLLECTED_TIMEOUT_MILLIS, SWEEP_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param threads                   Number of worker threads
+     * @param queueCapacity             Number of resets that may wait for a worker
+     * @param uncollectedTimeoutMillis  Completed results not taken within this time are wiped
+     * @param sweepIntervalMillis       How often completed results are checked
+     */
+    PasswordResetExecutor(int threads, int queueCapacity, long uncollectedTimeoutMillis, long sweepIntervalMillis)
+    {
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "CustomPasswordReset-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+
+        this.uncollectedTimeoutMillis = uncollectedTimeoutMillis;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "CustomPasswordResetSweeper");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }
+        });
+        this.sweeper.scheduleWithFixedDelay(new Runnable()
+        {
+            public void run()
+            {
+                sweep();
+            }
+        }, sweepIntervalMillis, sweepIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Executor shared by all beans
+     * @return Password reset executor
+     */
+    public static PasswordResetExecutor getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Submits a password reset, or joins the reset of the same user that the same actor has in progress
+     * @param service       Reset service with the OIM handles and actor of the current user
+     * @param userLogin     OIM.User Login (USR_LOGIN) of the target user
+     * @return Submitted or joined reset
+     * @throws RejectedExecutionException   Too many resets are in progress
+     */
+    public ResetTask submit(PasswordResetService service, String userLogin)
+    {
+        return submit(service, userLogin, null);
+    }
+
+    /**
+     * Submits a password reset, or joins the reset of the same user that the same actor has in progress
+     * @param service       Reset service with the OIM handles and actor of the current user
+     * @param userLogin     OIM.User Login (USR_LOGIN) of the target user
+     * @param targetHint    User key and organization shown to the current user; see PasswordResetService.resetPassword
+     * @return Submitted or joined reset
+     * @throws RejectedExecutionException   Too many resets are in progress
+     */
+    public ResetTask submit(PasswordResetService service, String userLogin, User targetHint)
+    {
+        // Only the actor whose subject runs the reset may be handed its password; OIM logins are case insensitive
+        String key = service.getActor() + "/" + userLogin.toUpperCase(Locale.ENGLISH);
+
+        while (true)
+        {
+            Flight flight = inFlight.get(key);
+            if (flight != null)
+            {
+                if (flight.join())
+                {
+                    logger.log(ODLLevel.NOTIFICATION, "Joined password reset in progress for user {0}", new Object[]{userLogin});
+                    return track(new ResetTask(this, userLogin, flight, service.getActor()));
+                }
+
+                // Every reader already took the result; it is about to leave the map
+                inFlight.remove(key, flight);
+                continue;
+            }
+
+            flight = new Flight(key, newCall(service, userLogin, targetHint));
+            if (inFlight.putIfAbsent(key, flight) != null)
+            {
+                continue;
+            }
+
+            try
+            {
+                executor.execute(flight);
+            }
+
+            catch (RejectedExecutionException e)
+            {
+                inFlight.remove(key, flight);
+                throw e;
+            }
+
+            logger.log(ODLLevel.NOTIFICATION, "Submitted password reset for user {0}; queued resets: {1}", new Object[]{userLogin, executor.getQueue().size()});
+            return track(new ResetTask(this, userLogin, flight, null));
+        }
+    }
+
+    /**
+     * @param ticket    Ticket of a submitted reset
+     * @return Reset; null if its result was already taken or wiped
+     */
+    public ResetTask getTask(String ticket)
+    {
+        return (ticket == null) ? null : tasks.get(ticket);
+    }
+
+    private ResetTask track(ResetTask task)
+    {
+        tasks.put(task.ticket, task);
+        return task;
+    }
+
+    /**
+     * Wipes the results of completed resets that nobody took in time
+     */
+    void sweep()
+    {
+        long now = System.currentTimeMillis();
+        for (ResetTask task : tasks.values())
+        {
+            long completedAt = task.flight.completedAt;
+            if (completedAt > 0 && now - completedAt > uncollectedTimeoutMillis && tasks.remove(task.ticket, task))
+            {
+                task.discard();
+                logger.log(ODLLevel.NOTIFICATION, "Wiped uncollected password reset result for user {0}", new Object[]{task.userLogin});
+            }
+        }
+    }
+
+    private Callable<char[]> newCall(final PasswordResetService service, final String userLogin, final User targetHint)
+    {
+        final Subject subject = Security.getCurrentSubject();
+        final long submitted = System.nanoTime();
+        return new Callable<char[]>()
+        {
+            public char[] call() throws Exception
+            {
+                ResetMetrics.getInstance().record(ResetMetrics.Phase.QUEUE_WAIT, submitted);
+
+                try
+                {
+                    return (char[])Security.runAs(subject, new PrivilegedExceptionAction<char[]>()
+                    {
+                        public char[] run() throws Exception
+                        {
+                            return service.resetPassword(userLogin, targetHint, false);
+                        }
+                    });
+                }
+
+                catch (PrivilegedActionException e)
+                {
+                    throw e.getException();
+                }
+            }
+        };
+    }
+
+    /**
+     * Stops accepting resets, cancels queued ones, interrupts running ones and wipes results nobody took
+     */
+    public void shutdown()
+    {
+        // Queued resets never run; cancel them so nobody waits on their result
+        for (Runnable queued : executor.shutdownNow())
+        {
+            ((Flight)queued).cancel(false);
+        }
+        sweeper.shutdownNow();
+        for (ResetTask task : tasks.values())
+        {
+            if (tasks.remove(task.ticket, task))
+            {
+                task.discard();
+            }
+        }
+    }
+
+    /**
+     * Reset of one user shared by every submission of the same actor that joined it
+     * - Each reader gets its own copy of the password; the original is wiped once every reader took it
+     * - Leaves the in-flight map as soon as it completes
+     */
+    private class Flight extends FutureTask<char[]>
+    {
+        private final String key;
+        private int readers = 1;
+        private volatile long completedAt; // 0 until the reset completes
+
+        Flight(String key, Callable<char[]> call)
+        {
+            super(call);
+            this.key = key;
+        }
+
+        /**
+         * @return false if every reader already took the result
+         */
+        synchronized boolean join()
+        {
+            if (readers == 0)
+            {
+                return false;
+            }
+
+            readers++;
+            return true;
+        }
+
+        /**
+         * @return Copy of the generated password; caller must wipe it after use
+         */
+        char[] take() throws InterruptedException, ExecutionException
+        {
+            char[] password;
+            try
+            {
+                password = get();
+            }
+
+            catch (CancellationException e)
+            {
+                throw new ExecutionException(new IllegalStateException("The password reset was cancelled because the application is stopping"));
+            }
+
+            synchronized (this)
+            {
+                char[] copy = password.clone();
+                if (--readers == 0)
+                {
+                    SecureRandomSource.wipe(password);
+                }
+                return copy;
+            }
+        }
+
+        /**
+         * Releases a reader of a failed reset
+         */
+        synchronized void release()
+        {
+            if (readers > 0)
+            {
+                readers--;
+            }
+        }
+
+        /**
+         * A password generated after the reset was cancelled is never read; wipe it
+         */
+        @Override
+        protected void set(char[] password)
+        {
+            super.set(password);
+            if (isCancelled())
+            {
+                SecureRandomSource.wipe(password);
+            }
+        }
+
+        @Override
+        protected void done()
+        {
+            completedAt = System.currentTimeMillis();
+            inFlight.remove(key, this);
+        }
+    }
+
+    /**
+     * Password reset in progress
+     */
+    public static class ResetTask
+    {
+        private final PasswordResetExecutor owner;
+        private final String ticket = UUID.randomUUID().toString();
+        private final String userLogin;
+        private final Flight flight;
+        private final String joinedBy; // Actor of a joined submission; null if this submission started the reset
+        private final long submitted = System.nanoTime();
+        private final AtomicBoolean taken = new AtomicBoolean();
+
+        ResetTask(PasswordResetExecutor owner, String userLogin, Flight flight, String joinedBy)
+        {
+            this.owner = owner;
+            this.userLogin = userLogin;
+            this.flight = flight;
+            this.joinedBy = joinedBy;
+        }
+
+        /**
+         * @return Identifier to keep in the session instead of the task; see PasswordResetExecutor.getTask
+         */
+        public String getTicket()
+        {
+            return ticket;
+        }
+
+        public String getUserLogin()
+        {
+            return userLogin;
+        }
+
+        /**
+         * @return true if the reset was already in progress when this task was submitted
+         */
+        public boolean isJoined()
+        {
+            return joinedBy != null;
+        }
+
+        public boolean isDone()
+        {
+            return flight.isDone();
+        }
+
+        /**
+         * Takes the result; may only be called once per task
+         * @return Generated password; caller must wipe it after use
+         * @throws ExecutionException   The reset failed, or its result was already taken or wiped
+         */
+        public char[] getPassword() throws InterruptedException, ExecutionException
+        {
+            if (!taken.compareAndSet(false, true))
+            {
+                throw new ExecutionException(new IllegalStateException("The result of the password reset for " + userLogin + " is no longer available"));
+            }
+            owner.tasks.remove(ticket, this);
+
+            try
+            {
+                char[] password = flight.take();
+                auditJoin(null);
+                return password;
+            }
+
+            catch (ExecutionException e)
+            {
+                flight.release();
+                auditJoin(e.getCause());
+                throw e;
+            }
+        }
+
+        /**
+         * Gives up the result without reading it; a generated password is wiped, a reset not done yet is cancelled
+         */
+        void discard()
+        {
+            if (!taken.compareAndSet(false, true))
+            {
+                return;
+            }
+
+            if (!flight.isDone())
+            {
+                flight.cancel(false);
+                flight.release();
+                return;
+            }
+
+            try
+            {
+                SecureRandomSource.wipe(flight.take());
+            }
+
+            catch (ExecutionException e)
+            {
+                flight.release();
+            }
+
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * The reset itself is audited by the reset service; each joined reader that is handed its result is audited here
+         */
+        private void auditJoin(Throwable failure)
+        {
+            if (joinedBy != null)
+            {
+                ResetAuditLog.getInstance().record(joinedBy, userLogin, ResetAuditLog.OPERATION_JOIN_CHANGE_PASSWORD, System.nanoTime() - submitted, 0, 0, failure);
+            }
+        }
+    }
+}
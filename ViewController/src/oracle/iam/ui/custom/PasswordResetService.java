@@ -0,0 +1,504 @@
+package oracle.iam.ui.custom;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import oracle.core.ojdl.logging.ODLLevel;
+import oracle.core.ojdl.logging.ODLLogger;
+import oracle.iam.identity.exception.NoSuchUserException;
+import oracle.iam.identity.exception.UserLookupException;
+import oracle.iam.identity.usermgmt.api.UserManager;
+import oracle.iam.identity.usermgmt.api.UserManagerConstants;
+import oracle.iam.identity.usermgmt.vo.User;
+import oracle.iam.passwordmgmt.api.PasswordMgmtService;
+import oracle.iam.passwordmgmt.vo.PasswordPolicyInfo;
+import oracle.iam.passwordmgmt.vo.ValidationResult;
+
+/**
+ * Password Reset Service
+ * - Generates a password that conforms to the password policy and custom rules of a user
+ * - Changes the password of the user, or has OIM reset it
+ * - Composes the stages of ResetPipeline; the user lookup and policy resolution overlap when the user key is known ahead
+ * - Independent of JSF so it can be used by the UI beans and by headless tools
+ */
+public class PasswordResetService
+{
+    // Logger
+    private static final ODLLogger logger = ODLLogger.getODLLogger(PasswordResetService.class.getName());
+
+    private static final int MAX_GENERATION_ATTEMPTS = 10; // Hard limit on generated candidates per reset
+    private static final double MIN_SUCCESS_PROBABILITY = 0.05; // Fail fast below this chance of success within the attempt limit
+
+    // Target user attributes needed to generate a password
+    private static final Set<String> USER_ATTRIBUTES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+        UserManagerConstants.AttributeName.USER_KEY.getId(), // usr_key
+        UserManagerConstants.AttributeName.FIRSTNAME.getId(),
+        UserManagerConstants.AttributeName.LASTNAME.getId(),
+        UserManagerConstants.AttributeName.DISPLAYNAME.getId(),
+        UserManagerConstants.AttributeName.EMAIL.getId(),
+        UserManagerConstants.AttributeName.USER_LOGIN.getId(),
+        UserManagerConstants.AttributeName.USER_ORGANIZATION.getId()))); // act_key
+
+    private final UserManager userManager;
+    private final PasswordMgmtService pwdMgmtService;
+    private final PasswordPolicyCache policyCache;
+    private final UserSnapshotCache userCache;
+    private final ResetMetrics metrics = ResetMetrics.getInstance();
+    private final ResetAuditLog auditLog = ResetAuditLog.getInstance();
+    private final PasswordPool pool = PasswordPool.getInstance();
+    private final ResetPipeline pipeline;
+    private volatile String actor = System.getProperty("user.name");
+
+    /**
+     * @param userManager       OIM user service
+     * @param pwdMgmtService    OIM password service
+     */
+    public PasswordResetService(UserManager userManager, PasswordMgmtService pwdMgmtService)
+    {
+        this(userManager, pwdMgmtService, PasswordPolicyCache.getInstance());
+    }
+
+    /**
+     * @param userManager       OIM user service
+     * @param pwdMgmtService    OIM password service
+     * @param policyCache       Cache of compiled password policies
+     */
+    public PasswordResetService(UserManager userManager, PasswordMgmtService pwdMgmtService, PasswordPolicyCache policyCache)
+    {
+        this(userManager, pwdMgmtService, policyCache, UserSnapshotCache.getInstance());
+    }
+
+    /**
+     * @param userManager       OIM user service
+     * @param pwdMgmtService    OIM password service
+     * @param policyCache       Cache of compiled password policies
+     * @param userCache         Cache of the user attributes needed to generate a password
+     */
+    public PasswordResetService(UserManager userManager, PasswordMgmtService pwdMgmtService, PasswordPolicyCache policyCache, UserSnapshotCache userCache)
+    {
+        this(userManager, pwdMgmtService, policyCache, userCache, ResetPipeline.getInstance());
+    }
+
+    /**
+     * @param userManager       OIM user service
+     * @param pwdMgmtService    OIM password service
+     * @param policyCache       Cache of compiled password policies
+     * @param userCache         Cache of the user attributes needed to generate a password
+     * @param pipeline          Stages of a reset; sized for the threads that call this service at once
+     */
+    public PasswordResetService(UserManager userManager, PasswordMgmtService pwdMgmtService, PasswordPolicyCache policyCache, UserSnapshotCache userCache, ResetPipeline pipeline)
+    {
+        this.userManager = userManager;
+        this.pwdMgmtService = pwdMgmtService;
+        this.policyCache = policyCache;
+        this.userCache = userCache;
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * Releases what this service registered on behalf of its user: the password pool stops refilling as that user
+     * and wipes the passwords it pooled. The service may still be used; it registers again on its next reset
+     */
+    public void close()
+    {
+        pool.unregister(this);
+    }
+
+    /**
+     * Generates a password and changes the password of the target user
+     * @param userLogin             OIM.User Login (USR_LOGIN)
+     * @param sendNotification      Send the OIM password change notification to the user
+     * @return Generated password; caller must wipe it after use
+     */
+    public char[] resetPassword(String userLogin, boolean sendNotification) throws Exception
+    {
+        return resetPassword(userLogin, null, sendNotification);
+    }
+
+    /**
+     * Generates a password and changes the password of the target user
+     * @param userLogin             OIM.User Login (USR_LOGIN)
+     * @param targetHint            User key and organization the caller has for the user, e.g. from the page that shows it;
+     *                              used for this reset only, to resolve the policy while the user is fetched; null if none
+     * @param sendNotification      Send the OIM password change notification to the user
+     * @return Generated password; caller must wipe it after use
+     */
+    public char[] resetPassword(final String userLogin, User targetHint, final boolean sendNotification) throws Exception
+    {
+        long start = System.nanoTime();
+        char[] generatedPassword = null;
+        int[] counts = new int[2]; // Candidates, remote validations
+        Exception failure = null;
+
+        try
+        {
+            generatedPassword = generatePassword(userLogin, targetHint, counts);
+
+            final char[] newPassword = generatedPassword;
+            pipeline.run(ResetPipeline.Stage.CHANGE_PASSWORD, new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    userManager.changePassword(userLogin, newPassword, true, sendNotification);
+                    return null;
+                }
+            });
+            metrics.recordReset();
+            return generatedPassword;
+        }
+
+        catch (Exception e)
+        {
+            SecureRandomSource.wipe(generatedPassword);
+            metrics.recordFailure(e);
+            userCache.invalidate(userLogin); // Snapshot may be stale; fetch it again next time
+            failure = e;
+            throw e;
+        }
+
+        finally
+        {
+            long duration = System.nanoTime() - start;
+            metrics.recordNanos(ResetMetrics.Phase.TOTAL, duration);
+            auditLog.record(actor, userLogin, ResetAuditLog.OPERATION_CHANGE_PASSWORD, duration, counts[0], counts[1], failure);
+        }
+    }
+
+    /**
+     * Has OIM generate a password and reset the password of the target user to it
+     * @param userLogin             OIM.User Login (USR_LOGIN)
+     * @param sendNotification      Send the new password to the user; otherwise it is not disclosed to anyone
+     */
+    public void resetPasswordByOIM(final String userLogin, final boolean sendNotification) throws Exception
+    {
+        long start = System.nanoTime();
+        Exception failure = null;
+
+        try
+        {
+            pipeline.run(ResetPipeline.Stage.RESET_PASSWORD, new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    userManager.resetPassword(userLogin, true, sendNotification);
+                    return null;
+                }
+            });
+            metrics.recordReset();
+        }
+
+        catch (Exception e)
+        {
+            metrics.recordFailure(e);
+            userCache.invalidate(userLogin);
+            failure = e;
+            throw e;
+        }
+
+        finally
+        {
+            auditLog.record(actor, userLogin, ResetAuditLog.OPERATION_RESET_PASSWORD, System.nanoTime() - start, 0, 0, failure);
+        }
+    }
+
+    /**
+     * @param actor     User recorded as having requested the resets in the audit log; defaults to the OS user
+     */
+    public void setActor(String actor)
+    {
+        this.actor = actor;
+    }
+
+    /**
+     * @return User recorded as having requested the resets in the audit log
+     */
+    public String getActor()
+    {
+        return actor;
+    }
+
+    /**
+     * Generates a temporary password that conforms to:
+     *  - OIM password policy that is applicable to target user
+     *  - Custom password policy rules
+     *      At least one number or symbol
+     *      The email address of the user [IGNORE CASE]
+     *      The user's display name [IGNORE CASE]; Remove spaces
+     * @param userLogin    OIM.User Login (USR_LOGIN)
+     * @return Generated password; caller must wipe it after use
+     */
+    public char[] generatePassword(String userLogin) throws NoSuchUserException, UserLookupException, Exception
+    {
+        return generatePassword(userLogin, null, new int[2]);
+    }
+
+    /**
+     * @param counts    Receives the number of candidates generated [0] and validated remotely [1]; read by the benchmarks
+     */
+    char[] generatePassword(String userLogin, int[] counts) throws NoSuchUserException, UserLookupException, Exception
+    {
+        return generatePassword(userLogin, null, counts);
+    }
+
+    /**
+     * @param targetHint    User key and organization known ahead; null if none
+     * @param counts        Receives the number of candidates generated [0] and validated remotely [1]
+     */
+    private char[] generatePassword(String userLogin, User targetHint, int[] counts) throws NoSuchUserException, UserLookupException, Exception
+    {
+        if (logger.isLoggable(ODLLevel.TRACE))
+        {
+            logger.log(ODLLevel.TRACE, "Enter generatePassword with parameter: [User Login: {0}]", new Object[]{userLogin});
+        }
+        ValidationResult vr = null;
+
+        try
+        {
+            Target target = lookupTarget(userLogin, targetHint);
+            User user = target.user;
+            String policyCacheKey = target.policyCacheKey;
+            CompiledPasswordPolicy userPwdPolicy = target.policy;
+
+            // Custom password policy rules are compiled once per user
+            CustomPasswordRules customPasswordPolicyRules = new CustomPasswordRules(user);
+            LocalPasswordPolicyEvaluator policyEvaluator = new LocalPasswordPolicyEvaluator(userPwdPolicy, user);
+
+            // Fail fast rather than spend the attempt limit on a policy that cannot or will hardly ever be met
+            PolicyFeasibilityAnalyzer.Result feasibility = PolicyFeasibilityAnalyzer.analyze(userPwdPolicy, customPasswordPolicyRules, policyEvaluator);
+            if (!feasibility.isFeasible())
+            {
+                throw new Exception(feasibility.getDiagnostic());
+            }
+
+            if (feasibility.getSuccessProbability(MAX_GENERATION_ATTEMPTS) < MIN_SUCCESS_PROBABILITY)
+            {
+                throw new Exception(String.format("Password policy %s and the custom rules of user %s accept only %.4f%% of generated passwords; "
+                                                  + "%.0f attempts expected but at most %d are made",
+                                                  userPwdPolicy.getName(), userLogin, feasibility.getAcceptanceProbability() * 100.0,
+                                                  feasibility.getExpectedAttempts(), MAX_GENERATION_ATTEMPTS));
+            }
+
+            // A pooled password was already validated by OIM; only the rules that depend on this user remain
+            if (pool.isEnabled())
+            {
+                pool.register(this, userPwdPolicy, pwdMgmtService, user.getEntityId());
+                char[] pooled = pool.take(userPwdPolicy, customPasswordPolicyRules, policyEvaluator);
+                metrics.recordPoolTake(pooled != null);
+                if (pooled != null)
+                {
+                    return pooled;
+                }
+            }
+
+            // Generator builds candidates that already conform to the password policy
+            PasswordGenerator generator = new PasswordGenerator(userPwdPolicy);
+
+            char[] candidate = generator.newBuffer(); // Reused for every attempt
+            long budgetMillis = pipeline.getTimeoutMillis(ResetPipeline.Stage.GENERATE);
+            long deadline = System.currentTimeMillis() + budgetMillis;
+            int candidates = 0;
+            int remoteValidations = 0;
+            long generateNanos = 0;
+            for (int attempt = 1; attempt <= MAX_GENERATION_ATTEMPTS && (budgetMillis <= 0 || System.currentTimeMillis() < deadline); attempt++)
+            {
+                long phaseStart = System.nanoTime();
+                generator.generate(candidate);
+                candidates++;
+
+                // Only candidates that pass the custom rules and the local policy evaluation are sent to OIM for confirmation
+                boolean accepted = customPasswordPolicyRules.accepts(candidate, candidate.length)
+                    && policyEvaluator.accepts(candidate, candidate.length);
+                generateNanos += System.nanoTime() - phaseStart;
+                if (!accepted)
+                {
+                    continue;
+                }
+
+                // Check against OIM password policy that is applicable to user
+                phaseStart = System.nanoTime();
+                vr = pwdMgmtService.validatePasswordAgainstPolicy(candidate, user.getEntityId(), Locale.getDefault(), false);
+                metrics.record(ResetMetrics.Phase.VALIDATE, phaseStart);
+                remoteValidations++;
+
+                if (vr.isPasswordValid())
+                {
+                    metrics.recordNanos(ResetMetrics.Phase.GENERATE, generateNanos);
+                    metrics.recordGeneration(candidates, remoteValidations);
+                    counts[0] = candidates;
+                    counts[1] = remoteValidations;
+                    return candidate;
+                }
+
+                // Cached policy is stale if OIM validated against a different policy or changed rules; recompile it
+                PasswordPolicyInfo currentPolicyInfo = vr.getPasswordPolicyInfo();
+                CompiledPasswordPolicy currentPolicy = (currentPolicyInfo == null) ? null : new CompiledPasswordPolicy(currentPolicyInfo);
+                if (currentPolicy != null && !userPwdPolicy.hasSameRules(currentPolicy))
+                {
+                    if (!userPwdPolicy.getName().equals(currentPolicy.getName()))
+                    {
+                        policyCache.invalidate(userPwdPolicy.getName());
+                    }
+                    userPwdPolicy = policyCache.put(policyCacheKey, currentPolicy);
+                    generator = new PasswordGenerator(userPwdPolicy);
+                    policyEvaluator = new LocalPasswordPolicyEvaluator(userPwdPolicy, user);
+                    SecureRandomSource.wipe(candidate);
+                    candidate = generator.newBuffer();
+                    logger.log(ODLLevel.NOTIFICATION, "Password Policy changed: {0}", new Object[]{userPwdPolicy});
+                }
+            }
+
+            metrics.recordNanos(ResetMetrics.Phase.GENERATE, generateNanos);
+            metrics.recordGeneration(candidates, remoteValidations);
+            counts[0] = candidates;
+            counts[1] = remoteValidations;
+            SecureRandomSource.wipe(candidate);
+            throw new Exception("Unable to generate a password that conforms to the password policy within " + MAX_GENERATION_ATTEMPTS + " attempts"
+                                + ((budgetMillis > 0) ? " or " + budgetMillis + " ms" : ""));
+        }
+
+        catch (IllegalStateException e)
+        {
+            logger.log(ODLLevel.SEVERE, "Failed in generatePassword()", e);
+            throw new Exception(e.getMessage(), e);
+        }
+
+        catch (NoSuchUserException e)
+        {
+            logger.log(ODLLevel.SEVERE, "Failed in generatePassword()", e);
+            throw e;
+        }
+
+        catch (UserLookupException e)
+        {
+            logger.log(ODLLevel.SEVERE, "Failed in generatePassword()", e);
+            throw e;
+        }
+    }
+
+    /**
+     * Checks whether a password that conforms to the password policy and custom rules of a user can be generated
+     * @param userLogin    OIM.User Login (USR_LOGIN)
+     * @return Verdict with the estimated acceptance of generated candidates
+     */
+    public PolicyFeasibilityAnalyzer.Result checkFeasibility(String userLogin) throws NoSuchUserException, UserLookupException, Exception
+    {
+        Target target = lookupTarget(userLogin, null);
+        return PolicyFeasibilityAnalyzer.analyze(target.policy, new CustomPasswordRules(target.user), new LocalPasswordPolicyEvaluator(target.policy, target.user));
+    }
+
+    /**
+     * Fetch target user attributes unless they were fetched moments ago, and resolve the password policy
+     * - The policy probe needs only the user key; if the caller passed a hint or the user was fetched before, the probe starts
+     *   with that key while the user is fetched, and its result is used once the keys match
+     * - Otherwise the probe follows the user lookup
+     * - A hint is never cached; only the fetched user is
+     */
+    private Target lookupTarget(final String userLogin, User targetHint) throws Exception
+    {
+        User user = userCache.get(userLogin);
+        if (user != null)
+        {
+            String policyCacheKey = policyCacheKeyOf(user);
+            return new Target(user, policyCacheKey, lookupPolicy(user.getEntityId(), policyCacheKey));
+        }
+
+        ResetPipeline.StageCall<User> userLookup = pipeline.start(ResetPipeline.Stage.LOOKUP_USER, new Callable<User>()
+        {
+            public User call() throws Exception
+            {
+                return userManager.getDetails(userLogin, USER_ATTRIBUTES, true);
+            }
+        });
+
+        User lastKnown = (targetHint != null) ? targetHint : userCache.getLastKnown(userLogin);
+        ResetPipeline.StageCall<PasswordPolicyInfo> policyProbe = null;
+        if (lastKnown != null && policyCache.getForOrganization(policyCacheKeyOf(lastKnown)) == null)
+        {
+            policyProbe = pipeline.start(ResetPipeline.Stage.RESOLVE_POLICY, newPolicyProbe(lastKnown.getEntityId()));
+        }
+
+        try
+        {
+            user = userLookup.await();
+        }
+
+        catch (Exception e)
+        {
+            if (policyProbe != null)
+            {
+                policyProbe.cancel();
+            }
+            throw e;
+        }
+        userCache.put(userLogin, user);
+
+        // OIM resolves the policy from the current organization of the user, so only the user key has to match
+        String policyCacheKey = policyCacheKeyOf(user);
+        if (policyProbe != null && user.getEntityId().equals(lastKnown.getEntityId()))
+        {
+            return new Target(user, policyCacheKey, policyCache.put(policyCacheKey, policyProbe.await()));
+        }
+
+        if (policyProbe != null)
+        {
+            policyProbe.cancel(); // Login now belongs to another user
+        }
+        return new Target(user, policyCacheKey, lookupPolicy(user.getEntityId(), policyCacheKey));
+    }
+
+    /**
+     * Password policies are attached to organizations; fall back to the user if the organization is unknown
+     */
+    private static String policyCacheKeyOf(User user)
+    {
+        Object orgKey = user.getAttribute(UserManagerConstants.AttributeName.USER_ORGANIZATION.getId());
+        return (orgKey != null) ? orgKey.toString() : "usr:" + user.getEntityId();
+    }
+
+    /**
+     * Only make the dummy call to obtain the password policy if it is not cached
+     */
+    private CompiledPasswordPolicy lookupPolicy(String userKey, String policyCacheKey) throws Exception
+    {
+        CompiledPasswordPolicy userPwdPolicy = policyCache.getForOrganization(policyCacheKey);
+        if (userPwdPolicy == null)
+        {
+            userPwdPolicy = policyCache.put(policyCacheKey, pipeline.run(ResetPipeline.Stage.RESOLVE_POLICY, newPolicyProbe(userKey)));
+        }
+        return userPwdPolicy;
+    }
+
+    /**
+     * Validating an empty password returns the password policy that applies to the user
+     */
+    private Callable<PasswordPolicyInfo> newPolicyProbe(final String userKey)
+    {
+        return new Callable<PasswordPolicyInfo>()
+        {
+            public PasswordPolicyInfo call() throws Exception
+            {
+                return pwdMgmtService.validatePasswordAgainstPolicy(new char[0], userKey, Locale.getDefault(), false).getPasswordPolicyInfo();
+            }
+        };
+    }
+
+    /**
+     * Target user with its password policy
+     */
+    private static class Target
+    {
+        final User user;
+        final String policyCacheKey;
+        final CompiledPasswordPolicy policy;
+
+        Target(User user, String policyCacheKey, CompiledPasswordPolicy policy)
+        {
+            this.user = user;
+            this.policyCacheKey = policyCacheKey;
+            this.policy = policy;
+        }
+    }
+}
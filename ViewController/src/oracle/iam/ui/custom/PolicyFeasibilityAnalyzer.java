@@ -0,0 +1,196 @@
+package oracle.iam.ui.custom;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import oracle.iam.identity.usermgmt.vo.User;
+import oracle.iam.passwordmgmt.vo.PasswordPolicyInfo;
+
+/**
+ * Policy Feasibility Analyzer
+ * - Decides before generating whether a password can conform to a password policy and the custom rules of a user
+ * - Policy conflicts: required character counts, unique and repeated characters and length limits against the allowed characters
+ * - Custom rules and the user attribute exclusions of the policy: whether every password the policy allows contains one of them
+ * - Estimates the share of generated candidates that LocalPasswordPolicyEvaluator and the custom rules accept,
+ *   and the expected number of attempts
+ *
+ * The estimate treats the characters of a candidate as drawn independently from the allowed characters,
+ * which is close to what PasswordGenerator does once the required characters are shuffled in.
+ * Rules the generator does not guarantee (repeated and unique characters once relaxed, unicode limits) are
+ * estimated by evaluating a sample of candidates, once per compiled policy.
+ */
+public class PolicyFeasibilityAnalyzer
+{
+    static final int SAMPLE_SIZE = 1000;
+
+    // Share of generated candidates the policy accepts, before user attribute exclusions; by compiled policy
+    private static final Map<CompiledPasswordPolicy, Double> policyAcceptance =
+        Collections.synchronizedMap(new WeakHashMap<CompiledPasswordPolicy, Double>());
+
+    private PolicyFeasibilityAnalyzer()
+    {
+    }
+
+    /**
+     * @param policyInfo    Password policy returned by OIM
+     * @param user          Target user; null to analyze the policy alone
+     * @return Verdict
+     */
+    public static Result analyze(PasswordPolicyInfo policyInfo, User user)
+    {
+        CompiledPasswordPolicy policy = new CompiledPasswordPolicy(policyInfo);
+        return (user == null)
+            ? analyze(policy, null)
+            : analyze(policy, new CustomPasswordRules(user), new LocalPasswordPolicyEvaluator(policy, user));
+    }
+
+    /**
+     * @param policy    Compiled password policy
+     * @param rules     Custom password rules of the target user; null to analyze the policy alone
+     * @return Verdict; user attribute exclusions of the policy are not considered
+     */
+    public static Result analyze(CompiledPasswordPolicy policy, CustomPasswordRules rules)
+    {
+        return analyze(policy, rules, null);
+    }
+
+    /**
+     * @param policy        Compiled password policy
+     * @param rules         Custom password rules of the target user; null to analyze the policy alone
+     * @param evaluator     Evaluator of the policy for the target user; null to ignore the user attribute exclusions
+     * @return Verdict
+     */
+    public static Result analyze(CompiledPasswordPolicy policy, CustomPasswordRules rules, LocalPasswordPolicyEvaluator evaluator)
+    {
+        PasswordGenerator generator;
+        try
+        {
+            generator = new PasswordGenerator(policy);
+        }
+
+        catch (IllegalStateException e)
+        {
+            return new Result(policy.getName(), false, e.getMessage(), 0.0);
+        }
+
+        double acceptance = policyAcceptance(policy, generator);
+
+        // Custom rules and the user attribute exclusions in one automaton, so overlapping values are not counted twice
+        String[] excluded = (evaluator == null) ? new String[0] : evaluator.getExcludedValues();
+        CustomPasswordRules forbidden = (rules == null) ? ((excluded.length == 0) ? null : new CustomPasswordRules(excluded)) : rules.and(excluded);
+        if (forbidden == null)
+        {
+            return new Result(policy.getName(), true, null, acceptance);
+        }
+
+        double avoidance = forbidden.avoidanceProbability(policy.all, policy.getLength());
+        if (avoidance == 0.0)
+        {
+            return new Result(policy.getName(), false, "Every " + policy.getLength() + " character password allowed by password policy "
+                              + policy.getName() + " contains the email or display name of the user, or a user attribute the policy excludes", 0.0);
+        }
+
+        return new Result(policy.getName(), true, null, acceptance * avoidance);
+    }
+
+    /**
+     * Share of generated candidates that conform to the policy apart from the user attribute exclusions;
+     * sampled once per compiled policy. A sample with no conforming candidate is reported as half a candidate,
+     * as the sample only shows the share is below 1 / SAMPLE_SIZE.
+     */
+    private static double policyAcceptance(CompiledPasswordPolicy policy, PasswordGenerator generator)
+    {
+        Double cached = policyAcceptance.get(policy);
+        if (cached != null)
+        {
+            return cached;
+        }
+
+        LocalPasswordPolicyEvaluator evaluator = new LocalPasswordPolicyEvaluator(policy, null, null, null);
+        char[] candidate = generator.newBuffer();
+        int accepted = 0;
+        for (int i = 0; i < SAMPLE_SIZE; i++)
+        {
+            generator.generate(candidate);
+            accepted += evaluator.accepts(candidate, candidate.length) ? 1 : 0;
+        }
+        SecureRandomSource.wipe(candidate);
+
+        double acceptance = Math.max(accepted, 0.5) / SAMPLE_SIZE;
+        policyAcceptance.put(policy, acceptance);
+        return acceptance;
+    }
+
+    /**
+     * Verdict of the analyzer
+     */
+    public static class Result
+    {
+        private final String policyName;
+        private final boolean feasible;
+        private final String diagnostic;
+        private final double acceptanceProbability;
+
+        Result(String policyName, boolean feasible, String diagnostic, double acceptanceProbability)
+        {
+            this.policyName = policyName;
+            this.feasible = feasible;
+            this.diagnostic = diagnostic;
+            this.acceptanceProbability = acceptanceProbability;
+        }
+
+        public String getPolicyName()
+        {
+            return policyName;
+        }
+
+        /**
+         * @return true if at least one conforming password exists
+         */
+        public boolean isFeasible()
+        {
+            return feasible;
+        }
+
+        /**
+         * @return Why no conforming password exists; null if feasible
+         */
+        public String getDiagnostic()
+        {
+            return diagnostic;
+        }
+
+        /**
+         * @return Estimated share of generated candidates that the password policy and the custom rules accept
+         */
+        public double getAcceptanceProbability()
+        {
+            return acceptanceProbability;
+        }
+
+        /**
+         * @return Expected number of candidates generated per password; infinite if infeasible
+         */
+        public double getExpectedAttempts()
+        {
+            return (acceptanceProbability > 0.0) ? 1.0 / acceptanceProbability : Double.POSITIVE_INFINITY;
+        }
+
+        /**
+         * @param attempts  Candidates that may be generated
+         * @return Estimated probability that one of them is accepted
+         */
+        public double getSuccessProbability(int attempts)
+        {
+            return 1.0 - Math.pow(1.0 - acceptanceProbability, attempts);
+        }
+
+        @Override
+        public String toString()
+        {
+            return feasible
+                ? String.format("Policy %s: feasible; acceptance %.4f, expected attempts %.2f", policyName, acceptanceProbability, getExpectedAttempts())
+                : String.format("Policy %s: infeasible; %s", policyName, diagnostic);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package oracle.iam.ui.custom;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import oracle.core.ojdl.logging.ODLLevel;
+import oracle.core.ojdl.logging.ODLLogger;
+
+/**
+ * Password Reset Audit Log
+ * - One structured event per reset: actor, target, operation, outcome, duration and generation counts
+ * - One event per joined reader of a shared reset, as the result was disclosed to it as well
+ * - Events are copied into a pre-allocated ring buffer and written by a background thread
+ * - Events never carry password material: only identifiers, counts and the failure's exception type
+ * - When the buffer is full events are dropped and counted rather than blocking the reset
+ */
+public class ResetAuditLog
+{
+    // Audit channel; separate from the diagnostic loggers so it can be routed on its own
+    private static final ODLLogger logger = ODLLogger.getODLLogger("oracle.iam.ui.custom.audit");
+
+    public static final String OPERATION_CHANGE_PASSWORD = "changePassword";
+    public static final String OPERATION_RESET_PASSWORD = "resetPassword";
+    public static final String OPERATION_JOIN_CHANGE_PASSWORD = "joinChangePassword"; // Joined a reset in progress and received its result
+
+    private static final int CAPACITY = 1024; // Power of two
+    private static final long DRAIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private static final ResetAuditLog INSTANCE = new ResetAuditLog(CAPACITY);
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private long head; // Drainer thread only
+    private long reportedDropped; // Drainer thread only
+    private final StringBuilder line = new StringBuilder(256); // Drainer thread only
+    private final Thread drainer;
+    private volatile boolean running = true;
+
+    /**
+     * @param capacity  Number of events the buffer holds; must be a power of two
+     */
+    ResetAuditLog(int capacity)
+    {
+        if (Integer.bitCount(capacity) != 1)
+        {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++)
+        {
+            slots[i] = new Slot(i);
+        }
+        this.mask = capacity - 1;
+
+        this.drainer = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                drainLoop();
+            }
+        }, "CustomPasswordResetAudit");
+        this.drainer.setDaemon(true);
+        this.drainer.setPriority(Thread.MIN_PRIORITY);
+        this.drainer.start();
+    }
+
+    /**
+     * Audit log shared by all beans and services
+     * @return Password reset audit log
+     */
+    public static ResetAuditLog getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Records a reset; never blocks
+     * @param actor                 User that requested the reset
+     * @param target                OIM.User Login (USR_LOGIN) of the target user
+     * @param operation             OPERATION_CHANGE_PASSWORD, OPERATION_RESET_PASSWORD or OPERATION_JOIN_CHANGE_PASSWORD
+     * @param durationNanos         Duration of the reset
+     * @param candidates            Candidates generated
+     * @param remoteValidations     Candidates sent to OIM for validation
+     * @param failure               Cause of the failure; null if the reset succeeded
+     */
+    public void record(String actor, String target, String operation, long durationNanos, int candidates, int remoteValidations, Throwable failure)
+    {
+        if (!running)
+        {
+            return;
+        }
+
+        // Bounded multi-producer queue: a slot is free for sequence t when its sequence equals t
+        Slot slot;
+        long t;
+        while (true)
+        {
+            t = tail.get();
+            slot = slots[(int)t & mask];
+            long sequence = slot.sequence;
+
+            if (sequence == t)
+            {
+                if (tail.compareAndSet(t, t + 1))
+                {
+                    break;
+                }
+            }
+
+            else if (sequence < t)
+            {
+                dropped.incrementAndGet();
+                return;
+            }
+        }
+
+        slot.timestamp = System.currentTimeMillis();
+        slot.actor = actor;
+        slot.target = target;
+        slot.operation = operation;
+        slot.durationNanos = durationNanos;
+        slot.candidates = candidates;
+        slot.remoteValidations = remoteValidations;
+        slot.failureType = (failure == null) ? null : failure.getClass().getName();
+        slot.sequence = t + 1; // Publish
+
+        // Wake the writer every half buffer so bursts are written before the buffer fills
+        if ((t & (mask >> 1)) == 0)
+        {
+            LockSupport.unpark(drainer);
+        }
+    }
+
+    /**
+     * @return Number of events dropped because the buffer was full
+     */
+    public long getDropped()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * Writes the pending events and stops the background writer
+     */
+    public void shutdown()
+    {
+        running = false;
+        LockSupport.unpark(drainer);
+
+        try
+        {
+            drainer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainLoop()
+    {
+        while (running)
+        {
+            if (drain() == 0)
+            {
+                LockSupport.parkNanos(DRAIN_INTERVAL_NANOS);
+            }
+        }
+
+        drain();
+    }
+
+    /**
+     * @return Number of events written
+     */
+    private int drain()
+    {
+        int written = 0;
+        while (true)
+        {
+            Slot slot = slots[(int)head & mask];
+            if (slot.sequence != head + 1)
+            {
+                break;
+            }
+
+            if (logger.isLoggable(ODLLevel.NOTIFICATION))
+            {
+                logger.log(ODLLevel.NOTIFICATION, format(slot));
+            }
+
+            slot.actor = null;
+            slot.target = null;
+            slot.sequence = head + slots.length; // Release for the producer one lap ahead
+            head++;
+            written++;
+        }
+
+        long droppedNow = dropped.get();
+        if (droppedNow != reportedDropped)
+        {
+            logger.log(ODLLevel.WARNING, "Dropped {0} password reset audit events; audit buffer full", new Object[]{droppedNow - reportedDropped});
+            reportedDropped = droppedNow;
+        }
+
+        return written;
+    }
+
+    private String format(Slot slot)
+    {
+        line.setLength(0);
+        line.append("PASSWORD_RESET time=").append(slot.timestamp);
+        line.append(" actor=");
+        appendSanitized(slot.actor);
+        line.append(" target=");
+        appendSanitized(slot.target);
+        line.append(" operation=").append(slot.operation);
+        line.append(" outcome=").append(slot.failureType == null ? "SUCCESS" : "FAILURE");
+        line.append(" durationMs=").append(TimeUnit.NANOSECONDS.toMillis(slot.durationNanos));
+        line.append(" candidates=").append(slot.candidates);
+        line.append(" remoteValidations=").append(slot.remoteValidations);
+        if (slot.failureType != null)
+        {
+            line.append(" error=").append(slot.failureType);
+        }
+        return line.toString();
+    }
+
+    /**
+     * Logins come from user input; keep each event on one line and its fields unambiguous
+     */
+    private void appendSanitized(String value)
+    {
+        if (value == null)
+        {
+            line.append('-');
+            return;
+        }
+
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            line.append((Character.isISOControl(c) || Character.isWhitespace(c) || c == '=') ? '_' : c);
+        }
+    }
+
+    /**
+     * Pre-allocated event holder; fields are published by the write of sequence
+     */
+    private static class Slot
+    {
+        volatile long sequence;
+        long timestamp;
+        String actor;
+        String target;
+        String operation;
+        long durationNanos;
+        int candidates;
+        int remoteValidations;
+        String failureType;
+
+        Slot(long sequence)
+        {
+            this.sequence = sequence;
+        }
+    }
+}
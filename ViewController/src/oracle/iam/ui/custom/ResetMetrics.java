@@ -0,0 +1,331 @@
+package oracle.iam.ui.custom;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Password Reset Metrics
+ * - Per-phase latency histograms, generation loop counts and failure counts by exception type
+ * - Recording is a System.nanoTime() call and a few atomic increments; cheap enough to leave on
+ * - Published on the platform MBean server as oracle.iam.ui.custom:type=ResetMetrics
+ * - Also the operations to drop the cached password policies and user snapshots
+ */
+public class ResetMetrics implements ResetMetricsMXBean
+{
+    public static final String OBJECT_NAME = "oracle.iam.ui.custom:type=ResetMetrics";
+
+    /**
+     * Phases of a password reset
+     */
+    public enum Phase
+    {
+        QUEUE_WAIT("queueWait"), // Submitted until picked up by a worker
+        GET_DETAILS("getDetails"), // Target user lookup in OIM; not recorded when the user is cached
+        POLICY("policy"), // Password policy probe; not recorded when the policy is cached
+        GENERATE("generate"), // Local candidate generation and custom rule checks, summed per password
+        VALIDATE("validate"), // Each remote validation of a candidate
+        CHANGE_PASSWORD("changePassword"),
+        RESET_PASSWORD("resetPassword"), // OIM generated password reset
+        TOTAL("total"); // Whole reset, excluding queue wait
+
+        private final String displayName;
+
+        Phase(String displayName)
+        {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName()
+        {
+            return displayName;
+        }
+    }
+
+    private static final ResetMetrics INSTANCE = new ResetMetrics();
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Phase.values().length];
+    private final AtomicLong resets = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong generations = new AtomicLong();
+    private final AtomicLong candidates = new AtomicLong();
+    private final AtomicLong remoteValidations = new AtomicLong();
+    private final AtomicLong poolHits = new AtomicLong();
+    private final AtomicLong poolMisses = new AtomicLong();
+    private final ConcurrentHashMap<String, AtomicLong> failuresByType = new ConcurrentHashMap<String, AtomicLong>();
+
+    ResetMetrics()
+    {
+        for (int i = 0; i < latencies.length; i++)
+        {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Metrics shared by all beans and services
+     * @return Password reset metrics
+     */
+    public static ResetMetrics getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Records the latency of a phase that started at startNanos
+     * @param phase         Phase
+     * @param startNanos    System.nanoTime() at the start of the phase
+     */
+    public void record(Phase phase, long startNanos)
+    {
+        recordNanos(phase, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @param phase     Phase
+     * @param nanos     Latency in nanoseconds
+     */
+    public void recordNanos(Phase phase, long nanos)
+    {
+        latencies[phase.ordinal()].record(nanos / 1000L);
+    }
+
+    /**
+     * Records one run of the generation loop
+     * @param candidateCount            Candidates generated
+     * @param remoteValidationCount     Candidates sent to OIM for validation
+     */
+    public void recordGeneration(int candidateCount, int remoteValidationCount)
+    {
+        generations.incrementAndGet();
+        candidates.addAndGet(candidateCount);
+        remoteValidations.addAndGet(remoteValidationCount);
+    }
+
+    /**
+     * Records a lookup in the password pool
+     * @param hit   true if a pooled password was used
+     */
+    public void recordPoolTake(boolean hit)
+    {
+        (hit ? poolHits : poolMisses).incrementAndGet();
+    }
+
+    /**
+     * Records a successful reset
+     */
+    public void recordReset()
+    {
+        resets.incrementAndGet();
+    }
+
+    /**
+     * Records a failed reset
+     * @param e     Cause of the failure
+     */
+    public void recordFailure(Throwable e)
+    {
+        failures.incrementAndGet();
+
+        String type = (e == null) ? "unknown" : e.getClass().getName();
+        AtomicLong count = failuresByType.get(type);
+        if (count == null)
+        {
+            failuresByType.putIfAbsent(type, new AtomicLong());
+            count = failuresByType.get(type);
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * @param phase     Phase
+     * @return Latency histogram of the phase
+     */
+    public LatencyHistogram getLatency(Phase phase)
+    {
+        return latencies[phase.ordinal()];
+    }
+
+    public long getResets()
+    {
+        return resets.get();
+    }
+
+    public long getGenerations()
+    {
+        return generations.get();
+    }
+
+    public long getFailures()
+    {
+        return failures.get();
+    }
+
+    public long getCandidatesGenerated()
+    {
+        return candidates.get();
+    }
+
+    public long getRemoteValidations()
+    {
+        return remoteValidations.get();
+    }
+
+    public long getPoolHits()
+    {
+        return poolHits.get();
+    }
+
+    public long getPoolMisses()
+    {
+        return poolMisses.get();
+    }
+
+    public double getCandidatesPerGeneration()
+    {
+        long n = generations.get();
+        return (n == 0) ? 0 : (double)candidates.get() / n;
+    }
+
+    public double getRemoteValidationsPerGeneration()
+    {
+        long n = generations.get();
+        return (n == 0) ? 0 : (double)remoteValidations.get() / n;
+    }
+
+    public Map<String, Long> getFailuresByType()
+    {
+        Map<String, Long> counts = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : failuresByType.entrySet())
+        {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    public Map<String, PhaseLatency> getLatencies()
+    {
+        Map<String, PhaseLatency> snapshot = new TreeMap<String, PhaseLatency>();
+        for (Phase phase : Phase.values())
+        {
+            snapshot.put(phase.getDisplayName(), new PhaseLatency(latencies[phase.ordinal()]));
+        }
+        return snapshot;
+    }
+
+    public void reset()
+    {
+        for (LatencyHistogram latency : latencies)
+        {
+            latency.reset();
+        }
+        resets.set(0);
+        failures.set(0);
+        generations.set(0);
+        candidates.set(0);
+        remoteValidations.set(0);
+        poolHits.set(0);
+        poolMisses.set(0);
+        failuresByType.clear();
+    }
+
+    public int getCachedPasswordPolicies()
+    {
+        return PasswordPolicyCache.getInstance().size();
+    }
+
+    public void invalidatePasswordPolicies()
+    {
+        PasswordPolicyCache.getInstance().invalidateAll();
+    }
+
+    public void invalidateUserSnapshots()
+    {
+        UserSnapshotCache.getInstance().invalidateAll();
+    }
+
+    /**
+     * Registers the metrics on the platform MBean server; replaces a registration left by a previous deployment
+     */
+    public void register() throws JMException
+    {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name))
+        {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(this, name);
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server
+     */
+    public void unregister() throws JMException
+    {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name))
+        {
+            server.unregisterMBean(name);
+        }
+    }
+
+    /**
+     * Latency statistics of a phase in milliseconds
+     */
+    public static class PhaseLatency
+    {
+        private final long count;
+        private final double mean;
+        private final double p50;
+        private final double p95;
+        private final double p99;
+        private final double max;
+
+        PhaseLatency(LatencyHistogram histogram)
+        {
+            this.count = histogram.getCount();
+            this.mean = histogram.getMean() / 1000.0;
+            this.p50 = histogram.getPercentile(50.0) / 1000.0;
+            this.p95 = histogram.getPercentile(95.0) / 1000.0;
+            this.p99 = histogram.getPercentile(99.0) / 1000.0;
+            this.max = histogram.getMax() / 1000.0;
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+
+        public double getMean()
+        {
+            return mean;
+        }
+
+        public double getP50()
+        {
+            return p50;
+        }
+
+        public double getP95()
+        {
+            return p95;
+        }
+
+        public double getP99()
+        {
+            return p99;
+        }
+
+        public double getMax()
+        {
+            return max;
+        }
+    }
+}
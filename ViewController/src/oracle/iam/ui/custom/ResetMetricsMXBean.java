@@ -0,0 +1,59 @@
+package oracle.iam.ui.custom;
+
+import java.util.Map;
+
+/**
+ * Password Reset Metrics management interface
+ * - Readable from JConsole and any other JMX client attached to the server
+ * - Latencies are in milliseconds
+ */
+public interface ResetMetricsMXBean
+{
+    long getResets();
+
+    long getGenerations();
+
+    long getFailures();
+
+    long getCandidatesGenerated();
+
+    long getRemoteValidations();
+
+    long getPoolHits();
+
+    long getPoolMisses();
+
+    double getCandidatesPerGeneration();
+
+    double getRemoteValidationsPerGeneration();
+
+    /**
+     * @return Failure counts by exception class name
+     */
+    Map<String, Long> getFailuresByType();
+
+    /**
+     * @return Latency statistics by phase name
+     */
+    Map<String, ResetMetrics.PhaseLatency> getLatencies();
+
+    /**
+     * Clears all counters and histograms
+     */
+    void reset();
+
+    /**
+     * @return Number of compiled password policies cached
+     */
+    int getCachedPasswordPolicies();
+
+    /**
+     * Drops every cached password policy, e.g. after a policy was changed in OIM; they are compiled again on next use
+     */
+    void invalidatePasswordPolicies();
+
+    /**
+     * Drops every cached user snapshot, e.g. after user attributes were changed in bulk; users are looked up again on next use
+     */
+    void invalidateUserSnapshots();
+}
@@ -0,0 +1,336 @@
+package oracle.iam.ui.custom;
+
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.security.auth.Subject;
+import oracle.core.ojdl.logging.ODLLevel;
+import oracle.core.ojdl.logging.ODLLogger;
+import weblogic.security.Security;
+
+/**
+ * Reset Pipeline
+ * - The stages of a password reset: user lookup, policy resolution, generation and the password change or OIM reset
+ * - Stages that do not depend on each other are started together and awaited where their result is needed
+ * - Read-only stages have a timeout; the password change and OIM reset have none, as abandoning them would leave the outcome unknown
+ * - Started stages run on a bounded pool shared by all resets, as the subject of the caller; a stage the pool has no thread for fails
+ *   with AdmissionRejectedException rather than run on the caller without its timeout
+ * - The pool is sized for the reset workers that use it; callers with their own workers, such as the headless tools, create their own
+ * - Records the duration of each remote stage in ResetMetrics
+ */
+public class ResetPipeline
+{
+    // Logger
+    private static final ODLLogger logger = ODLLogger.getODLLogger(ResetPipeline.class.getName());
+
+    static final int STAGES_PER_WORKER = 2; // User lookup and policy probe run at the same time
+
+    private static final ResetPipeline INSTANCE = forWorkers(PasswordResetExecutor.THREADS);
+
+    /**
+     * Stages of a reset
+     */
+    public enum Stage
+    {
+        LOOKUP_USER("lookupUser", ResetMetrics.Phase.GET_DETAILS, true, 10000L),
+        RESOLVE_POLICY("resolvePolicy", ResetMetrics.Phase.POLICY, true, 10000L),
+        GENERATE("generate", null, true, 10000L), // Checked between candidates; metrics are recorded per candidate by the reset service
+        CHANGE_PASSWORD("changePassword", ResetMetrics.Phase.CHANGE_PASSWORD, false, 0L),
+        RESET_PASSWORD("resetPassword", ResetMetrics.Phase.RESET_PASSWORD, false, 0L); // OIM generated password
+
+        private final String displayName;
+        private final ResetMetrics.Phase phase;
+        private final boolean readOnly;
+        private final long defaultTimeoutMillis;
+
+        Stage(String displayName, ResetMetrics.Phase phase, boolean readOnly, long defaultTimeoutMillis)
+        {
+            this.displayName = displayName;
+            this.phase = phase;
+            this.readOnly = readOnly;
+            this.defaultTimeoutMillis = defaultTimeoutMillis;
+        }
+
+        public String getDisplayName()
+        {
+            return displayName;
+        }
+
+        /**
+         * @return false if the stage changes the target user; such a stage cannot be given a timeout
+         */
+        public boolean isReadOnly()
+        {
+            return readOnly;
+        }
+
+        /**
+         * @param displayName   Display name, e.g. lookupUser
+         * @return Stage; null if there is none by that name
+         */
+        public static Stage forDisplayName(String displayName)
+        {
+            for (Stage stage : values())
+            {
+                if (stage.displayName.equals(displayName))
+                {
+                    return stage;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentHashMap<Stage, Long> timeouts = new ConcurrentHashMap<Stage, Long>();
+    private final ResetMetrics metrics = ResetMetrics.getInstance();
+
+    /**
+     * @param threads   Stages that may run on the pool at once
+     */
+    ResetPipeline(int threads)
+    {
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "CustomPasswordResetStage-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+
+        for (Stage stage : Stage.values())
+        {
+            timeouts.put(stage, stage.defaultTimeoutMillis);
+        }
+    }
+
+    /**
+     * Pipeline shared by all resets of PasswordResetExecutor
+     * @return Reset pipeline
+     */
+    public static ResetPipeline getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * @param workers   Threads that run resets through the pipeline at once
+     * @return Pipeline with enough threads for the concurrent stages of every worker
+     */
+    static ResetPipeline forWorkers(int workers)
+    {
+        return new ResetPipeline(STAGES_PER_WORKER * workers);
+    }
+
+    /**
+     * @param stage     Stage
+     * @return Timeout in milliseconds; 0 if the stage may take as long as it needs
+     */
+    public long getTimeoutMillis(Stage stage)
+    {
+        return timeouts.get(stage);
+    }
+
+    /**
+     * @param stage             Read-only stage
+     * @param timeoutMillis     Timeout in milliseconds; 0 removes the timeout
+     * @throws IllegalArgumentException     A timeout was given to a stage that changes the target user
+     */
+    public void setTimeoutMillis(Stage stage, long timeoutMillis)
+    {
+        if (!stage.isReadOnly() && timeoutMillis > 0)
+        {
+            throw new IllegalArgumentException("Stage " + stage.getDisplayName() + " changes the target user and cannot be given a timeout");
+        }
+        timeouts.put(stage, Math.max(0L, timeoutMillis));
+    }
+
+    /**
+     * Starts a stage on the pool; the caller continues with other stages and awaits it when it needs the result
+     * @param stage     Stage
+     * @param call      Work of the stage
+     * @return Started stage; if the pool has no free thread, awaiting it throws AdmissionRejectedException
+     */
+    public <T> StageCall<T> start(Stage stage, Callable<T> call)
+    {
+        StageCall<T> stageCall = new StageCall<T>(stage, timeouts.get(stage), newTask(stage, call));
+        try
+        {
+            executor.execute(stageCall.task);
+        }
+
+        catch (RejectedExecutionException e)
+        {
+            String reason = executor.isShutdown() ? "the reset pipeline is shut down" : "all " + executor.getMaximumPoolSize() + " stage threads are busy";
+            logger.log(ODLLevel.WARNING, "Reset stage {0} rejected: {1}", new Object[]{stage.getDisplayName(), reason});
+            stageCall.rejection = new AdmissionRejectedException(stage.getDisplayName(), reason);
+        }
+        return stageCall;
+    }
+
+    /**
+     * Runs a stage and waits for it; on the calling thread if the stage has no timeout
+     * @param stage     Stage
+     * @param call      Work of the stage
+     * @return Result of the stage
+     * @throws TimeoutException     The stage did not complete within its timeout
+     */
+    public <T> T run(Stage stage, Callable<T> call) throws Exception
+    {
+        if (timeouts.get(stage) > 0)
+        {
+            return start(stage, call).await();
+        }
+
+        long start = System.nanoTime();
+        T result = call.call();
+        record(stage, start);
+        return result;
+    }
+
+    /**
+     * Stops the pool; stages in progress complete
+     */
+    public void shutdown()
+    {
+        executor.shutdown();
+    }
+
+    private <T> FutureTask<T> newTask(final Stage stage, final Callable<T> call)
+    {
+        final Subject subject = Security.getCurrentSubject();
+        return new FutureTask<T>(new Callable<T>()
+        {
+            @SuppressWarnings("unchecked")
+            public T call() throws Exception
+            {
+                long start = System.nanoTime();
+                try
+                {
+                    T result = (T)Security.runAs(subject, new PrivilegedExceptionAction<T>()
+                    {
+                        public T run() throws Exception
+                        {
+                            return call.call();
+                        }
+                    });
+                    record(stage, start);
+                    return result;
+                }
+
+                catch (PrivilegedActionException e)
+                {
+                    throw e.getException();
+                }
+            }
+        });
+    }
+
+    private void record(Stage stage, long start)
+    {
+        if (stage.phase != null)
+        {
+            metrics.record(stage.phase, start);
+        }
+    }
+
+    /**
+     * Stage started on the pool
+     */
+    public static class StageCall<T>
+    {
+        private final Stage stage;
+        private final long timeoutMillis;
+        private final FutureTask<T> task;
+        private final long started = System.nanoTime();
+        private AdmissionRejectedException rejection; // Set by start before the stage is handed out
+
+        StageCall(Stage stage, long timeoutMillis, FutureTask<T> task)
+        {
+            this.stage = stage;
+            this.timeoutMillis = timeoutMillis;
+            this.task = task;
+        }
+
+        public Stage getStage()
+        {
+            return stage;
+        }
+
+        /**
+         * Waits for the stage until its timeout, counted from when it was started
+         * @return Result of the stage
+         * @throws TimeoutException                 The stage did not complete within its timeout; it is cancelled
+         * @throws AdmissionRejectedException       The pool had no thread for the stage; it did not run
+         * @throws Exception                        Exception thrown by the stage
+         */
+        public T await() throws Exception
+        {
+            if (rejection != null)
+            {
+                throw rejection;
+            }
+
+            try
+            {
+                if (timeoutMillis <= 0)
+                {
+                    return task.get();
+                }
+
+                long remaining = started + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) - System.nanoTime();
+                return task.get(Math.max(0L, remaining), TimeUnit.NANOSECONDS);
+            }
+
+            catch (TimeoutException e)
+            {
+                task.cancel(true);
+                logger.log(ODLLevel.WARNING, "Reset stage {0} did not complete within {1} ms", new Object[]{stage.getDisplayName(), timeoutMillis});
+                throw new TimeoutException("Reset stage " + stage.getDisplayName() + " did not complete within " + timeoutMillis + " ms");
+            }
+
+            catch (InterruptedException e)
+            {
+                task.cancel(true);
+                throw e;
+            }
+
+            catch (ExecutionException e)
+            {
+                if (e.getCause() instanceof Exception)
+                {
+                    throw (Exception)e.getCause();
+                }
+
+                if (e.getCause() instanceof Error)
+                {
+                    throw (Error)e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * Abandons the stage; a call in progress completes and its result is discarded
+         */
+        public void cancel()
+        {
+            task.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package oracle.iam.ui.custom;
+
+import java.util.concurrent.TimeUnit;
+import oracle.core.ojdl.logging.ODLLevel;
+import oracle.core.ojdl.logging.ODLLogger;
+import oracle.iam.identity.usermgmt.api.UserManager;
+import oracle.iam.passwordmgmt.api.PasswordMgmtService;
+import oracle.iam.passwordmgmt.vo.PasswordPolicyInfo;
+
+/**
+ * Reset Warm-Up
+ * - Runs once when the application is deployed, on a low priority background thread
+ * - Seeds the SecureRandom provider and generates the proxy classes of the guarded OIM handles
+ * - Compiles the synthetic password policies and runs the generation, custom rule and local policy checks
+ *   against synthetic users until the JIT has compiled them
+ * - Makes no OIM calls and records no metrics or audit events; logs the time of each step
+ */
+public class ResetWarmUp implements Runnable
+{
+    // Logger
+    private static final ODLLogger logger = ODLLogger.getODLLogger(ResetWarmUp.class.getName());
+
+    static final int DEFAULT_ITERATIONS = 20000;
+    private static final long MAX_DURATION_MILLIS = 30000L;
+    private static final int BATCH_SIZE = 1000;
+
+    // Login, first name, last name, email
+    private static final String[][] USERS = {
+        {"JSMITH", "John", "Smith", "john.smith@example.com"},
+        {"MGARCIA01", "Maria", "Garcia", "maria.garcia@example.com"},
+        {"LI", "Wei", "Li", "wei.li@example.com"}
+    };
+
+    private final int iterations;
+    private volatile boolean stopped;
+
+    /**
+     * @param iterations    Candidates to generate across all synthetic policies and users
+     */
+    public ResetWarmUp(int iterations)
+    {
+        this.iterations = iterations;
+    }
+
+    /**
+     * Ends the warm-up after the current candidate
+     */
+    public void stop()
+    {
+        stopped = true;
+    }
+
+    public void run()
+    {
+        long start = System.nanoTime();
+        try
+        {
+            // Handles are resolved per session on first use; their proxy classes can be generated ahead
+            long stepStart = System.nanoTime();
+            AdmissionController.getInstance().guard(UserManager.class, null);
+            AdmissionController.getInstance().guard(PasswordMgmtService.class, null);
+            logStep("proxy classes of the OIM handles", stepStart);
+
+            // The first SecureRandom of the server may block while the provider gathers its seed
+            stepStart = System.nanoTime();
+            SecureRandomSource.current().nextInt(2);
+            logStep("seeding the SecureRandom provider", stepStart);
+
+            stepStart = System.nanoTime();
+            PasswordPolicyInfo[] policyInfos = SyntheticPasswordPolicies.all();
+            CompiledPasswordPolicy[] policies = new CompiledPasswordPolicy[policyInfos.length];
+            PasswordGenerator[] generators = new PasswordGenerator[policyInfos.length];
+            for (int i = 0; i < policyInfos.length; i++)
+            {
+                policies[i] = new CompiledPasswordPolicy(policyInfos[i]);
+                generators[i] = new PasswordGenerator(policies[i]);
+                PolicyFeasibilityAnalyzer.analyze(policies[i], null);
+            }
+            logStep("compiling " + policies.length + " synthetic password policies", stepStart);
+
+            stepStart = System.nanoTime();
+            CustomPasswordRules[] rules = new CustomPasswordRules[USERS.length];
+            LocalPasswordPolicyEvaluator[][] evaluators = new LocalPasswordPolicyEvaluator[policies.length][USERS.length];
+            for (int u = 0; u < USERS.length; u++)
+            {
+                String[] user = USERS[u];
+                rules[u] = new CustomPasswordRules(user[3], user[1] + " " + user[2]);
+                for (int p = 0; p < policies.length; p++)
+                {
+                    evaluators[p][u] = new LocalPasswordPolicyEvaluator(policies[p], user[0], user[1], user[2]);
+                    PolicyFeasibilityAnalyzer.analyze(policies[p], rules[u], evaluators[p][u]);
+                }
+            }
+            logStep("compiling rules of " + USERS.length + " synthetic users", stepStart);
+
+            generate(generators, rules, evaluators);
+        }
+
+        catch (RuntimeException e)
+        {
+            logger.log(ODLLevel.WARNING, "Password reset warm-up failed; the first resets may be slower", e);
+        }
+
+        logger.log(ODLLevel.NOTIFICATION, "Password reset warm-up finished in {0} ms", new Object[]{TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)});
+    }
+
+    /**
+     * Generation loop of PasswordResetService without the remote calls
+     */
+    private void generate(PasswordGenerator[] generators, CustomPasswordRules[] rules, LocalPasswordPolicyEvaluator[][] evaluators)
+    {
+        char[][] buffers = new char[generators.length][];
+        for (int p = 0; p < generators.length; p++)
+        {
+            buffers[p] = generators[p].newBuffer();
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(MAX_DURATION_MILLIS);
+        long batchStart = start;
+        long firstBatchNanos = -1;
+        long lastBatchNanos = -1;
+        int accepted = 0;
+        int candidates = 0;
+
+        while (candidates < iterations && !stopped && System.nanoTime() < deadline)
+        {
+            int p = candidates % generators.length;
+            int u = (candidates / generators.length) % rules.length;
+            char[] candidate = buffers[p];
+
+            generators[p].generate(candidate);
+            if (rules[u].accepts(candidate, candidate.length) && evaluators[p][u].accepts(candidate, candidate.length))
+            {
+                accepted++;
+            }
+            candidates++;
+
+            if (candidates % BATCH_SIZE == 0)
+            {
+                long now = System.nanoTime();
+                lastBatchNanos = now - batchStart;
+                firstBatchNanos = (firstBatchNanos < 0) ? lastBatchNanos : firstBatchNanos;
+                batchStart = now;
+            }
+        }
+
+        for (char[] buffer : buffers)
+        {
+            SecureRandomSource.wipe(buffer);
+        }
+
+        logger.log(ODLLevel.NOTIFICATION, "Password reset warm-up generated {0} candidates ({1} accepted) in {2} ms; "
+                   + "per candidate {3} us in the first {4} and {5} us in the last {4}",
+                   new Object[]{candidates, accepted, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                                perCandidateMicros(firstBatchNanos), BATCH_SIZE, perCandidateMicros(lastBatchNanos)});
+    }
+
+    private static String perCandidateMicros(long batchNanos)
+    {
+        return (batchNanos < 0) ? "-" : String.format("%.1f", batchNanos / 1000.0 / BATCH_SIZE);
+    }
+
+    private static void logStep(String step, long stepStart)
+    {
+        logger.log(ODLLevel.NOTIFICATION, "Password reset warm-up: {0} took {1} ms", new Object[]{step, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stepStart)});
+    }
+}
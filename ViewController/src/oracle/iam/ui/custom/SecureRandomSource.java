@@ -0,0 +1,114 @@
+package oracle.iam.ui.custom;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Secure Random Source
+ * - One SecureRandom per thread; no contention between concurrent resets
+ * - Random bytes are drawn in batches and handed out from a buffer
+ * - The SecureRandom is replaced with a freshly seeded one after a fixed number of bytes
+ * - Indexes are mapped without modulo bias (rejection sampling)
+ */
+public class SecureRandomSource
+{
+    private static final int BATCH_SIZE = 256; // Bytes drawn from SecureRandom at a time
+    private static final long RESEED_INTERVAL_BYTES = 1L << 20; // Reseed after 1 MB
+
+    private static final ThreadLocal<SecureRandomSource> CURRENT = new ThreadLocal<SecureRandomSource>()
+    {
+        @Override
+        protected SecureRandomSource initialValue()
+        {
+            return new SecureRandomSource();
+        }
+    };
+
+    private final byte[] batch = new byte[BATCH_SIZE];
+    private int position = BATCH_SIZE;
+    private long bytesSinceSeed;
+    private SecureRandom random = new SecureRandom();
+
+    private SecureRandomSource()
+    {
+    }
+
+    /**
+     * Random source of the current thread
+     * @return Random source; must not be shared with other threads
+     */
+    public static SecureRandomSource current()
+    {
+        return CURRENT.get();
+    }
+
+    /**
+     * Uniformly distributed int in [0, bound)
+     * @param bound     Upper bound (exclusive); 1 to 65536
+     * @return Random index
+     */
+    public int nextInt(int bound)
+    {
+        if (bound <= 0 || bound > 0x10000)
+        {
+            throw new IllegalArgumentException("bound must be between 1 and 65536: " + bound);
+        }
+
+        if (bound <= 0x100)
+        {
+            // Largest multiple of bound that fits in a byte; values above it would bias the result
+            int limit = 0x100 - (0x100 % bound);
+            int value;
+            do
+            {
+                value = nextByte();
+            } while (value >= limit);
+            return value % bound;
+        }
+
+        int limit = 0x10000 - (0x10000 % bound);
+        int value;
+        do
+        {
+            value = (nextByte() << 8) | nextByte();
+        } while (value >= limit);
+        return value % bound;
+    }
+
+    private int nextByte()
+    {
+        if (position == BATCH_SIZE)
+        {
+            refill();
+        }
+
+        int value = batch[position] & 0xFF;
+        batch[position++] = 0;
+        return value;
+    }
+
+    private void refill()
+    {
+        if (bytesSinceSeed >= RESEED_INTERVAL_BYTES)
+        {
+            random = new SecureRandom(); // Seeds itself from the platform entropy source
+            bytesSinceSeed = 0;
+        }
+
+        random.nextBytes(batch);
+        bytesSinceSeed += BATCH_SIZE;
+        position = 0;
+    }
+
+    /**
+     * Overwrites password material
+     * @param chars     Buffer to wipe; may be null
+     */
+    public static void wipe(char[] chars)
+    {
+        if (chars != null)
+        {
+            Arrays.fill(chars, '\0');
+        }
+    }
+}
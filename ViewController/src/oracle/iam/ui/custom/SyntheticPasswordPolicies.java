@@ -0,0 +1,95 @@
+package oracle.iam.ui.custom;
+
+import java.util.LinkedHashSet;
+import oracle.iam.passwordmgmt.vo.PasswordPolicyInfo;
+
+/**
+ * Synthetic Password Policies
+ * - Policies that take the different paths of the generator: lenient defaults, strict counts, a tiny allowed alphabet and a long max length
+ * - Used by the deploy warm-up, and by the load test and benchmarks outside the library, so all of them exercise the same policies
+ */
+public final class SyntheticPasswordPolicies
+{
+    public static final String LENIENT = "lenient";
+    public static final String STRICT = "strict";
+    public static final String TINY_ALPHABET = "tinyAlphabet";
+    public static final String LONG_MAX = "longMax";
+
+    private static final String[] NAMES = {LENIENT, STRICT, TINY_ALPHABET, LONG_MAX};
+
+    private SyntheticPasswordPolicies()
+    {
+    }
+
+    /**
+     * @param name      Policy name: lenient, strict, tinyAlphabet or longMax
+     * @return New policy; callers may change it
+     * @throws IllegalArgumentException     There is no synthetic policy by that name
+     */
+    public static PasswordPolicyInfo get(String name)
+    {
+        PasswordPolicyInfo info = new PasswordPolicyInfo();
+        info.setName(name);
+
+        if (LENIENT.equals(name))
+        {
+            info.setMaxLength(8);
+        }
+
+        else if (STRICT.equals(name))
+        {
+            info.setMinLength(12);
+            info.setMaxLength(16);
+            info.setMinUppercase(2);
+            info.setMinLowercase(2);
+            info.setMinNumerics(2);
+            info.setMinSpecialChars(2);
+            info.setMaxRepeated(1);
+            info.setMinUnique(12);
+            info.setStartsWithChar(Boolean.TRUE);
+            info.setDisAllowUserId(Boolean.TRUE);
+            info.setDisAllowFirstName(Boolean.TRUE);
+            info.setDisAllowLastName(Boolean.TRUE);
+        }
+
+        else if (TINY_ALPHABET.equals(name))
+        {
+            LinkedHashSet<Character> allowed = new LinkedHashSet<Character>();
+            for (char c : "aeiouAEIOU19!#".toCharArray())
+            {
+                allowed.add(c);
+            }
+            info.setAllowedChars(allowed);
+            info.setMaxLength(10);
+            info.setMinNumerics(1);
+        }
+
+        else if (LONG_MAX.equals(name))
+        {
+            info.setMinLength(8);
+            info.setMaxLength(128);
+            info.setMinNumerics(1);
+            info.setMinSpecialChars(1);
+        }
+
+        else
+        {
+            throw new IllegalArgumentException("No synthetic password policy " + name + "; expected one of lenient, strict, tinyAlphabet, longMax");
+        }
+
+        return info;
+    }
+
+    /**
+     * @return New instances of every synthetic policy
+     */
+    public static PasswordPolicyInfo[] all()
+    {
+        PasswordPolicyInfo[] policies = new PasswordPolicyInfo[NAMES.length];
+        for (int i = 0; i < NAMES.length; i++)
+        {
+            policies[i] = get(NAMES[i]);
+        }
+        return policies;
+    }
+}
@@ -0,0 +1,125 @@
+package oracle.iam.ui.custom;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import oracle.iam.identity.usermgmt.vo.User;
+
+/**
+ * User Snapshot Cache
+ * - The few user attributes a reset needs, keyed by User Login
+ * - Short time to live so changes made elsewhere in OIM are picked up quickly
+ * - Password changes do not touch the cached attributes; entries are invalidated when a reset of the user fails
+ * - Expired entries are kept until replaced or evicted; their keys let a reset resolve the policy while the user is fetched again
+ * - Bounded (least recently used entries are evicted); shared by all sessions on the managed server
+ */
+public class UserSnapshotCache
+{
+    private static final int DEFAULT_MAX_ENTRIES = 512;
+    private static final long DEFAULT_TTL_MILLIS = 30L * 1000L; // 30 seconds
+
+    private static final UserSnapshotCache INSTANCE = new UserSnapshotCache(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+
+    private final long ttlMillis;
+    private final Map<String, Snapshot> users;
+
+    /**
+     * @param maxEntries    Maximum number of users to keep
+     * @param ttlMillis     Time to live of an entry in milliseconds
+     */
+    UserSnapshotCache(final int maxEntries, long ttlMillis)
+    {
+        this.ttlMillis = ttlMillis;
+        this.users = new LinkedHashMap<String, Snapshot>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest)
+            {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Cache shared by all beans
+     * @return User snapshot cache
+     */
+    public static UserSnapshotCache getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * @param userLogin     OIM.User Login (USR_LOGIN)
+     * @return User snapshot; null if not cached or expired
+     */
+    public synchronized User get(String userLogin)
+    {
+        Snapshot snapshot = users.get(userLogin);
+        if (snapshot == null || System.currentTimeMillis() - snapshot.loadedAt > ttlMillis)
+        {
+            return null;
+        }
+
+        return snapshot.user;
+    }
+
+    /**
+     * User keys and organization do not change as often as the other attributes; work that needs only them
+     * may start from an expired snapshot, provided it is confirmed against the fresh one
+     * @param userLogin     OIM.User Login (USR_LOGIN)
+     * @return User snapshot, even if expired; null if not cached or invalidated
+     */
+    public synchronized User getLastKnown(String userLogin)
+    {
+        Snapshot snapshot = users.get(userLogin);
+        return (snapshot == null) ? null : snapshot.user;
+    }
+
+    /**
+     * @param userLogin     OIM.User Login (USR_LOGIN)
+     * @param user          User returned by UserManager.getDetails
+     */
+    public synchronized void put(String userLogin, User user)
+    {
+        users.put(userLogin, new Snapshot(user));
+    }
+
+    /**
+     * Remove a user; the next reset fetches it again
+     * @param userLogin     OIM.User Login (USR_LOGIN)
+     */
+    public synchronized void invalidate(String userLogin)
+    {
+        users.remove(userLogin);
+    }
+
+    /**
+     * Remove all users
+     */
+    public synchronized void invalidateAll()
+    {
+        users.clear();
+    }
+
+    /**
+     * @return Number of cached users, including expired ones
+     */
+    public synchronized int size()
+    {
+        return users.size();
+    }
+
+    /**
+     * User with the time it was fetched
+     */
+    private static class Snapshot
+    {
+        final User user;
+        final long loadedAt = System.currentTimeMillis();
+
+        Snapshot(User user)
+        {
+            this.user = user;
+        }
+    }
+}